@@ -0,0 +1,337 @@
+/*
+ * Copyright 2012 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sap.research.roo.addon.nwcloud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Roo Addon for SAP HANA Cloud - Java Source
+ * ------------------------------------------
+ *
+ * Minimal textual editing of the Java classes (and AspectJ ITDs) of a Roo project, as used by commands
+ * changing methods of generated controllers (e.g. "nwcloud enable-async-web"). Methods are found by
+ * their name; string literals, character literals and comments are skipped when matching brackets.
+ * All changes keep the rest of the source unchanged.
+ *
+ * @see NWCloudOperationsImpl
+ */
+class JavaSource {
+
+	/**
+	 * Words that can precede a method call like a return type precedes a method name
+	 */
+	private static final List<String> KEYWORDS = Arrays.asList("return", "new", "else", "throw", "case", "assert");
+
+	private String content;
+
+	JavaSource(String content) {
+		this.content = content;
+	}
+
+	String getContent() {
+		return content;
+	}
+
+	/**
+	 * Declaration of a method in the source. All positions are indices in the content of the source.
+	 */
+	static class MethodDeclaration {
+
+		/** Start of the line of the method signature (in front of its indentation) */
+		int lineStart;
+		/** Indentation of the method signature */
+		String indent;
+		/** Start and end (exclusive) of the return type */
+		int returnTypeStart;
+		int returnTypeEnd;
+		/** Method name (for AspectJ ITDs including the target type, e.g. "PersonController.list") */
+		String name;
+		/** Positions of "(" and ")" of the parameter list */
+		int parametersStart;
+		int parametersEnd;
+		/** Positions of "{" and "}" of the body */
+		int bodyStart;
+		int bodyEnd;
+	}
+
+	/**
+	 * Find all declarations of methods with the passed name (there may be more than one if it is overloaded).
+	 * In AspectJ ITDs, "name" is matched against the method name without the target type.
+	 *
+	 * @param name String of method name
+	 * @return List of method declarations found, in the order of the source
+	 */
+	List<MethodDeclaration> findMethods(String name) {
+
+		List<MethodDeclaration> result = new ArrayList<MethodDeclaration>();
+		Pattern pattern = Pattern.compile("(?m)^([ \\t]*)(?:(?:public|protected|private|static|final|synchronized)\\s+)*([\\w.]+(?:\\s*<[\\w.<>,\\s?\\[\\]]*>)?(?:\\s*\\[\\])*)\\s+((?:[\\w]+\\.)?" + Pattern.quote(name) + ")\\s*\\(");
+		Matcher matcher = pattern.matcher(content);
+		while (matcher.find()) {
+			if (KEYWORDS.contains(matcher.group(2)) || this.isInCommentOrLiteral(matcher.start(3))) {
+				continue;
+			}
+			MethodDeclaration method = new MethodDeclaration();
+			method.lineStart = matcher.start();
+			method.indent = matcher.group(1);
+			method.returnTypeStart = matcher.start(2);
+			method.returnTypeEnd = matcher.end(2);
+			method.name = matcher.group(3);
+			method.parametersStart = matcher.end() - 1;
+			method.parametersEnd = this.findClosing(method.parametersStart);
+			if (method.parametersEnd<0) {
+				continue;
+			}
+			// Skip the "throws" clause, the body has to follow (otherwise it's a call or an abstract method)
+			int index = method.parametersEnd + 1;
+			while ((index<content.length()) && (content.charAt(index)!='{') && (content.charAt(index)!=';') && (content.charAt(index)!='=')) {
+				index++;
+			}
+			if ((index>=content.length()) || (content.charAt(index)!='{')) {
+				continue;
+			}
+			method.bodyStart = index;
+			method.bodyEnd = this.findClosing(index);
+			if (method.bodyEnd>=0) {
+				result.add(method);
+			}
+		}
+		return result;
+
+	}
+
+	/**
+	 * @return Start of the declaration of the method, including the annotations on the lines in front of it
+	 */
+	int getDeclarationStart(MethodDeclaration method) {
+
+		int start = method.lineStart;
+		while (start>0) {
+			int previousLineStart = content.lastIndexOf('\n', start - 2) + 1;
+			if (!content.substring(previousLineStart, start).trim().startsWith("@")) {
+				break;
+			}
+			start = previousLineStart;
+		}
+		return start;
+
+	}
+
+	/**
+	 * @return String of the declaration of the method (including its annotations and body)
+	 */
+	String getDeclaration(MethodDeclaration method) {
+		return content.substring(this.getDeclarationStart(method), method.bodyEnd + 1);
+	}
+
+	/**
+	 * @return List of String of full qualified names of the types imported by the source (without static imports)
+	 */
+	List<String> getImports() {
+
+		List<String> result = new ArrayList<String>();
+		Matcher matcher = Pattern.compile("(?m)^import\\s+([\\w.]+)\\s*;").matcher(content);
+		while (matcher.find()) {
+			result.add(matcher.group(1));
+		}
+		return result;
+
+	}
+
+	/**
+	 * Add a member (e.g. a method) at the end of the body of the (first top level) type of the source.
+	 *
+	 * @param member String of member declaration, including its indentation
+	 */
+	void addMember(String member) {
+
+		int end = content.lastIndexOf('}');
+		if (end<0) {
+			throw new IllegalStateException("NWCloud-AddOn: No type declaration found.");
+		}
+		this.replace(end, end, "\n" + member + "\n");
+
+	}
+
+	/**
+	 * @return String of return type of the method
+	 */
+	String getReturnType(MethodDeclaration method) {
+		return content.substring(method.returnTypeStart, method.returnTypeEnd);
+	}
+
+	/**
+	 * @return String of body of the method (without the enclosing brackets)
+	 */
+	String getBody(MethodDeclaration method) {
+		return content.substring(method.bodyStart + 1, method.bodyEnd);
+	}
+
+	/**
+	 * Split the parameter list of the method into its parameters (including their annotations and modifiers).
+	 *
+	 * @return List of String of parameters (trimmed)
+	 */
+	List<String> getParameters(MethodDeclaration method) {
+
+		List<String> result = new ArrayList<String>();
+		int depth = 0;
+		int start = method.parametersStart + 1;
+		for (int i=start; i<method.parametersEnd; i++) {
+			int skipped = this.skipCommentOrLiteral(i);
+			if (skipped>i) {
+				i = skipped - 1;
+				continue;
+			}
+			char c = content.charAt(i);
+			if ((c=='(') || (c=='<') || (c=='{')) {
+				depth++;
+			} else if ((c==')') || (c=='>') || (c=='}')) {
+				depth--;
+			} else if ((c==',') && (depth==0)) {
+				result.add(content.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		String last = content.substring(start, method.parametersEnd).trim();
+		if (last.length()>0) {
+			result.add(last);
+		}
+		return result;
+
+	}
+
+	/**
+	 * @return String of the name of the parameter (the last word of its declaration)
+	 */
+	static String getParameterName(String parameter) {
+		Matcher matcher = Pattern.compile("(\\w+)\\s*$").matcher(parameter);
+		return matcher.find() ? matcher.group(1) : parameter;
+	}
+
+	/**
+	 * Replace the text between "start" (inclusive) and "end" (exclusive). Positions of method declarations
+	 * found before are invalid afterwards if they are behind "start".
+	 */
+	void replace(int start, int end, String text) {
+		content = content.substring(0, start) + text + content.substring(end);
+	}
+
+	/**
+	 * Add an import of the passed type behind the last import (or the package declaration), if the source
+	 * doesn't import it yet.
+	 *
+	 * @param type String of full qualified type name
+	 * @return True if the import was added, false if it existed already
+	 */
+	boolean addImport(String type) {
+
+		if (Pattern.compile("(?m)^import\\s+" + Pattern.quote(type) + "\\s*;").matcher(content).find()) {
+			return false;
+		}
+		Matcher matcher = Pattern.compile("(?m)^(?:import|package)\\s+[\\w.*\\s]+;[ \\t]*$").matcher(content);
+		int index = 0;
+		while (matcher.find()) {
+			index = matcher.end();
+		}
+		String statement = "import " + type + ";";
+		if (index>0) {
+			this.replace(index, index, "\n" + statement);
+		} else {
+			this.replace(0, 0, statement + "\n");
+		}
+		return true;
+
+	}
+
+	/**
+	 * Find the bracket closing the one at position "open" ("(", "{" or "[").
+	 *
+	 * @return Position of the closing bracket, or -1 if there is none
+	 */
+	int findClosing(int open) {
+
+		char opening = content.charAt(open);
+		char closing = (opening=='(') ? ')' : ((opening=='{') ? '}' : ']');
+		int depth = 0;
+		for (int i=open; i<content.length(); i++) {
+			int skipped = this.skipCommentOrLiteral(i);
+			if (skipped>i) {
+				i = skipped - 1;
+				continue;
+			}
+			char c = content.charAt(i);
+			if (c==opening) {
+				depth++;
+			} else if (c==closing) {
+				depth--;
+				if (depth==0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+
+	}
+
+	/**
+	 * If a comment, string literal or character literal starts at position "index", return the position
+	 * behind its end, otherwise return "index".
+	 */
+	private int skipCommentOrLiteral(int index) {
+
+		if (content.startsWith("//", index)) {
+			int end = content.indexOf('\n', index);
+			return (end<0) ? content.length() : end;
+		}
+		if (content.startsWith("/*", index)) {
+			int end = content.indexOf("*/", index + 2);
+			return (end<0) ? content.length() : end + 2;
+		}
+		char c = content.charAt(index);
+		if ((c=='"') || (c=='\'')) {
+			int i = index + 1;
+			while ((i<content.length()) && (content.charAt(i)!=c) && (content.charAt(i)!='\n')) {
+				i += (content.charAt(i)=='\\') ? 2 : 1;
+			}
+			return Math.min(i + 1, content.length());
+		}
+		return index;
+
+	}
+
+	/**
+	 * @return True if position "index" is inside a comment or a literal
+	 */
+	private boolean isInCommentOrLiteral(int index) {
+
+		int i = 0;
+		while (i<index) {
+			int skipped = this.skipCommentOrLiteral(i);
+			if (skipped>index) {
+				return true;
+			}
+			i = (skipped>i) ? skipped : i + 1;
+		}
+		return false;
+
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sap.research.roo.addon.nwcloud;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Roo Addon for SAP HANA Cloud - Load Test Results
+ * ------------------------------------------------
+ *
+ * Summary of the results of a local load test, as used by the command "nwcloud tune-runtime"
+ * to recommend the number of server processes. The results are read from a CSV file in the
+ * format written by Apache JMeter (".jtl" files saved as CSV with field names), of which
+ * the columns "timeStamp" (start of sample in ms), "elapsed" (ms) and "success" are used.
+ *
+ * @see NWCloudOperationsImpl
+ */
+class LoadTestResults {
+
+	int samples;
+	int errors;
+	long durationMillis;
+	long medianMillis;
+	long p95Millis;
+	long p99Millis;
+
+	/**
+	 * Read the load test results from the passed stream. The stream is not closed.
+	 *
+	 * @param in InputStream of the CSV file
+	 * @return LoadTestResults summarizing all samples in the file
+	 * @throws IOException if the file could not be read
+	 * @throws IllegalArgumentException if the file has no header with the needed columns or contains no samples
+	 */
+	static LoadTestResults read(InputStream in) throws IOException {
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+
+		String header = reader.readLine();
+		List<String> columns = header!=null ? Arrays.asList(splitCsvLine(header)) : new ArrayList<String>();
+		int timeStampColumn = columns.indexOf("timeStamp");
+		int elapsedColumn = columns.indexOf("elapsed");
+		int successColumn = columns.indexOf("success");
+		if ((timeStampColumn<0) || (elapsedColumn<0)) {
+			throw new IllegalArgumentException("Load test results need a CSV header with the columns 'timeStamp' and 'elapsed' (JMeter CSV format)");
+		}
+
+		LoadTestResults result = new LoadTestResults();
+		List<Long> elapsed = new ArrayList<Long>();
+		long firstStart = Long.MAX_VALUE;
+		long lastEnd = Long.MIN_VALUE;
+		String line;
+		while ((line = reader.readLine())!=null) {
+			String[] values = splitCsvLine(line);
+			if (values.length<=Math.max(timeStampColumn, elapsedColumn)) {
+				continue;
+			}
+			try {
+				long start = Long.parseLong(values[timeStampColumn].trim());
+				long time = Long.parseLong(values[elapsedColumn].trim());
+				firstStart = Math.min(firstStart, start);
+				lastEnd = Math.max(lastEnd, start + time);
+				elapsed.add(time);
+				if ((successColumn>=0) && (values.length>successColumn) && !Boolean.parseBoolean(values[successColumn].trim())) {
+					result.errors++;
+				}
+			} catch (NumberFormatException e) {
+				// Ignore lines that are no samples (e.g. repeated headers)
+			}
+		}
+		if (elapsed.isEmpty()) {
+			throw new IllegalArgumentException("Load test results contain no samples");
+		}
+
+		java.util.Collections.sort(elapsed);
+		result.samples = elapsed.size();
+		result.durationMillis = Math.max(1, lastEnd - firstStart);
+		result.medianMillis = percentile(elapsed, 50);
+		result.p95Millis = percentile(elapsed, 95);
+		result.p99Millis = percentile(elapsed, 99);
+
+		return result;
+
+	}
+
+	/**
+	 * @return Number of requests per second that were served during the load test
+	 */
+	double getThroughput() {
+		return this.samples * 1000.0 / this.durationMillis;
+	}
+
+	/**
+	 * @return Percentage of failed requests
+	 */
+	double getErrorRate() {
+		return 100.0 * this.errors / this.samples;
+	}
+
+	private static long percentile(List<Long> sortedValues, int percentile) {
+		int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+		return sortedValues.get(Math.max(0, Math.min(index, sortedValues.size() - 1)));
+	}
+
+	/**
+	 * Split a line of a CSV file separated by commas. Values may be enclosed in double quotes
+	 * (containing commas and doubled double quotes).
+	 */
+	static String[] splitCsvLine(String line) {
+		List<String> result = new ArrayList<String>();
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		for (int i=0; i<line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c=='"') {
+					if ((i+1<line.length()) && (line.charAt(i+1)=='"')) {
+						value.append('"');
+						i++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					value.append(c);
+				}
+			} else if (c=='"') {
+				quoted = true;
+			} else if (c==',') {
+				result.add(value.toString());
+				value.setLength(0);
+			} else {
+				value.append(c);
+			}
+		}
+		result.add(value.toString());
+		return result.toArray(new String[result.size()]);
+	}
+
+}
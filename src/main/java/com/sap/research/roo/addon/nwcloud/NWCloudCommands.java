@@ -18,10 +18,13 @@ package com.sap.research.roo.addon.nwcloud;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceStrategy;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.model.JavaType;
 import org.springframework.roo.shell.CliAvailabilityIndicator;
 import org.springframework.roo.shell.CliCommand;
+import org.springframework.roo.shell.CliOption;
 import org.springframework.roo.shell.CommandMarker;
 
 /**
@@ -39,12 +42,18 @@ import org.springframework.roo.shell.CommandMarker;
  */
 @Component
 @Service
+@Reference(name = "operations", referenceInterface = NWCloudOperations.class, strategy = ReferenceStrategy.LOOKUP)
 public class NWCloudCommands implements CommandMarker {
 	
 	/**
-	 * Get a reference to the NWCloudOperations from the underlying OSGi container
+	 * The commands are registered when the Roo shell starts, but the NWCloudOperations are only looked up in the
+	 * OSGi container when they are first needed (see getOperations()). So the implementation, its references to
+	 * other parts of Roo, and its XML and template handling are not loaded on startup of Roo. Note that the
+	 * availability indicators need the operations as well (they check the files of the project, some of them
+	 * by parsing "web.xml" or "webmvc-config.xml"), so the first Tab completion or "help" activates them.
 	 */
-	@Reference private NWCloudOperations operations; 
+	private ComponentContext context = null;
+	private volatile NWCloudOperations operations = null;
 	
 	/**
 	 * The activate method for this OSGi component, which will be called by the OSGi container upon bundle activation.
@@ -52,7 +61,8 @@ public class NWCloudCommands implements CommandMarker {
 	 * @param context The component context can be used to get access to the OSGi container (i.e. find out if certain bundles are active)
 	 */
 	protected void activate(ComponentContext context) {
-		// Nothing to do here
+		// Store OSGi context to look up the operations on first use
+		this.context = context;
     }
 
 	/**
@@ -61,7 +71,23 @@ public class NWCloudCommands implements CommandMarker {
 	 * @param context The component context can be used to get access to the OSGi container (i.e. find out if certain bundles are active)
 	 */
 	protected void deactivate(ComponentContext context) {
-		// Nothing to do here
+		this.operations = null;
+		this.context = null;
+	}
+
+	/**
+	 * Get the NWCloudOperations from the underlying OSGi container. They are looked up on the first call, which
+	 * activates the component NWCloudOperationsImpl.
+	 * 
+	 * @return NWCloudOperations
+	 */
+	private NWCloudOperations getOperations() {
+		NWCloudOperations result = this.operations;
+		if (result==null) {
+			result = (NWCloudOperations) this.context.locateService("operations");
+			this.operations = result;
+		}
+		return result;
 	}
 	
 	// *************************************************************************
@@ -74,12 +100,12 @@ public class NWCloudCommands implements CommandMarker {
 
 	@CliAvailabilityIndicator("nwcloud enable-deploy")
 	public boolean nwcloudEnableDeployIsAvailable() {
-		return operations.nwcloudEnableDeployIsAvailable();
+		return getOperations().nwcloudEnableDeployIsAvailable();
 	}
 	
 	@CliCommand(value = "nwcloud enable-deploy", help="Prepare application for deployment on SAP HANA Cloud platform")
 	public void nwcloudEnableDeploy() {
-		operations.nwcloudEnableDeploy();
+		getOperations().nwcloudEnableDeploy();
 	}
 
 	// --------------------------------------------------------------------------------
@@ -88,12 +114,12 @@ public class NWCloudCommands implements CommandMarker {
 
 	@CliAvailabilityIndicator("nwcloud disable-deploy")
 	public boolean nwcloudDisableDeployIsAvailable() {
-		return operations.nwcloudDisableDeployIsAvailable();
+		return getOperations().nwcloudDisableDeployIsAvailable();
 	}
 	
 	@CliCommand(value = "nwcloud disable-deploy", help="Revert command nwcloud enable-deploy")
 	public void nwcloudDisableDeploy() {
-		operations.nwcloudDisableDeploy();
+		getOperations().nwcloudDisableDeploy();
 	}
 
 	// --------------------------------------------------------------------------------
@@ -102,12 +128,14 @@ public class NWCloudCommands implements CommandMarker {
 
 	@CliAvailabilityIndicator("nwcloud enable-jpa")
 	public boolean nwcloudEnableJPAIsAvailable() {
-		return operations.nwcloudEnableJPAIsAvailable();
+		return getOperations().nwcloudEnableJPAIsAvailable();
 	}
 
 	@CliCommand(value = "nwcloud enable-jpa", help="Configure JPA persistency to use SAP HANA Cloud persistency service")
-	public void nwcloudEnableJPA() {
-		operations.nwcloudEnableJPA();
+	public void nwcloudEnableJPA(
+			@CliOption(key = "warmUpConnections", mandatory = false, unspecifiedDefaultValue = "0", specifiedDefaultValue = "5", help = "Count of connections to open and validate on startup, also initializing the persistence unit (0 disables the warm-up)") int warmUpConnections,
+			@CliOption(key = "readReplica", mandatory = false, help = "JNDI name of a read replica database, which read-only transactions are routed to") String readReplica) {
+		getOperations().nwcloudEnableJPA(warmUpConnections, readReplica);
 	}
 
 	// --------------------------------------------------------------------------------
@@ -116,12 +144,326 @@ public class NWCloudCommands implements CommandMarker {
 
 	@CliAvailabilityIndicator("nwcloud disable-jpa")
 	public boolean nwcloudDisableJPAIsAvailable() {
-		return operations.nwcloudDisableJPAIsAvailable();
+		return getOperations().nwcloudDisableJPAIsAvailable();
 	}
 
 	@CliCommand(value = "nwcloud disable-jpa", help="Revert command nwcloud enable-jpa")
 	public void nwcloudDisableJPA() {
-		operations.nwcloudDisableJPA();
+		getOperations().nwcloudDisableJPA();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud analyze-war
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud analyze-war")
+	public boolean nwcloudAnalyzeWarIsAvailable() {
+		return getOperations().nwcloudAnalyzeWarIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud analyze-war", help="Report size by dependency, duplicate classes and unreferenced jars of the packaged WAR, and optionally exclude jars from embedding")
+	public void nwcloudAnalyzeWar(
+			@CliOption(key = "war", mandatory = false, help = "The WAR file to analyze (defaults to the WAR in the target folder of the project)") String war,
+			@CliOption(key = "excludeUnreferenced", mandatory = false, specifiedDefaultValue = "true", unspecifiedDefaultValue = "false", help = "Exclude all unreferenced jars in the Embed-Dependency instruction of the pom.xml") boolean excludeUnreferenced,
+			@CliOption(key = "exclude", mandatory = false, help = "Comma separated list of artifactIds to exclude in the Embed-Dependency instruction of the pom.xml") String exclude) {
+		getOperations().nwcloudAnalyzeWar(war, excludeUnreferenced, exclude);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud build
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud build")
+	public boolean nwcloudBuildIsAvailable() {
+		return getOperations().nwcloudBuildIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud build", help="Build the project with Maven without leaving the Roo shell (uses the Maven Daemon if installed)")
+	public void nwcloudBuild(
+			@CliOption(key = "goals", mandatory = false, unspecifiedDefaultValue = "package", help = "The Maven goals and options to run") String goals,
+			@CliOption(key = "offline", mandatory = false, specifiedDefaultValue = "true", unspecifiedDefaultValue = "false", help = "Run Maven in offline mode") boolean offline) {
+		getOperations().nwcloudBuild(goals, offline);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud deploy
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud deploy")
+	public boolean nwcloudDeployIsAvailable() {
+		return getOperations().nwcloudDeployIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud deploy", help="Package the project and deploy it to SAP HANA Cloud without leaving the Roo shell")
+	public void nwcloudDeploy(
+			@CliOption(key = "offline", mandatory = false, specifiedDefaultValue = "true", unspecifiedDefaultValue = "false", help = "Run Maven in offline mode") boolean offline) {
+		getOperations().nwcloudDeploy(offline);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud tune-runtime
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud tune-runtime")
+	public boolean nwcloudTuneRuntimeIsAvailable() {
+		return getOperations().nwcloudTuneRuntimeIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud tune-runtime", help="Apply a coherent runtime profile (Java version, server processes, logging, JVM arguments) to nwcloud.properties")
+	public void nwcloudTuneRuntime(
+			@CliOption(key = "profile", mandatory = true, help = "The runtime profile to apply: latency, throughput or small") String profile,
+			@CliOption(key = "minimumProcesses", mandatory = false, help = "Minimum count of server processes (overrides profile and recommendation)") Integer minimumProcesses,
+			@CliOption(key = "maximumProcesses", mandatory = false, help = "Maximum count of server processes (overrides profile and recommendation)") Integer maximumProcesses,
+			@CliOption(key = "loadTestResults", mandatory = false, help = "CSV file with results of a local load test (JMeter format) to recommend the count of server processes") String loadTestResults,
+			@CliOption(key = "loadTestProcesses", mandatory = false, unspecifiedDefaultValue = "1", help = "Count of server processes that served the load test") int loadTestProcesses,
+			@CliOption(key = "targetThroughput", mandatory = false, help = "Requests per second the application should be able to handle") Double targetThroughput) {
+		getOperations().nwcloudTuneRuntime(profile, minimumProcesses, maximumProcesses, loadTestResults, loadTestProcesses, targetThroughput);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-web-cache
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enable-web-cache")
+	public boolean nwcloudEnableWebCacheIsAvailable() {
+		return getOperations().nwcloudEnableWebCacheIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enable-web-cache", help="Add gzip compression, ETag and cache headers to the responses of the web application")
+	public void nwcloudEnableWebCache(
+			@CliOption(key = "cachePeriod", mandatory = false, unspecifiedDefaultValue = "86400", help = "Seconds static resources under /resources may be cached by clients") int cachePeriod) {
+		getOperations().nwcloudEnableWebCache(cachePeriod);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-web-cache
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud disable-web-cache")
+	public boolean nwcloudDisableWebCacheIsAvailable() {
+		return getOperations().nwcloudDisableWebCacheIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud disable-web-cache", help="Revert command nwcloud enable-web-cache")
+	public void nwcloudDisableWebCache() {
+		getOperations().nwcloudDisableWebCache();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-metrics
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enable-metrics")
+	public boolean nwcloudEnableMetricsIsAvailable() {
+		return getOperations().nwcloudEnableMetricsIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enable-metrics", help="Measure latency per endpoint and per JPA query, exposed via JMX and a protected JSON endpoint")
+	public void nwcloudEnableMetrics(
+			@CliOption(key = "path", mandatory = false, unspecifiedDefaultValue = "/nwcloud/metrics", help = "The path serving the metrics as JSON") String path,
+			@CliOption(key = "role", mandatory = false, unspecifiedDefaultValue = "NWCloudMetricsViewer", help = "The role needed to access the metrics") String role) {
+		getOperations().nwcloudEnableMetrics(path, role);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-metrics
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud disable-metrics")
+	public boolean nwcloudDisableMetricsIsAvailable() {
+		return getOperations().nwcloudDisableMetricsIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud disable-metrics", help="Revert command nwcloud enable-metrics")
+	public void nwcloudDisableMetrics() {
+		getOperations().nwcloudDisableMetrics();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-asset-pipeline
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enable-asset-pipeline")
+	public boolean nwcloudEnableAssetPipelineIsAvailable() {
+		return getOperations().nwcloudEnableAssetPipelineIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enable-asset-pipeline", help="Bundle, minify and fingerprint scripts and stylesheets while packaging, and serve them with long-lived cache headers")
+	public void nwcloudEnableAssetPipeline() {
+		getOperations().nwcloudEnableAssetPipeline();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-asset-pipeline
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud disable-asset-pipeline")
+	public boolean nwcloudDisableAssetPipelineIsAvailable() {
+		return getOperations().nwcloudDisableAssetPipelineIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud disable-asset-pipeline", help="Revert command nwcloud enable-asset-pipeline")
+	public void nwcloudDisableAssetPipeline() {
+		getOperations().nwcloudDisableAssetPipeline();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-stateless
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enable-stateless")
+	public boolean nwcloudEnableStatelessIsAvailable() {
+		return getOperations().nwcloudEnableStatelessIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enable-stateless", help="Mark the application as distributable, avoid creating sessions, and report what still uses them")
+	public void nwcloudEnableStateless(
+			@CliOption(key = "sessionTimeout", mandatory = false, unspecifiedDefaultValue = "10", help = "Minutes of inactivity after which a session expires") int sessionTimeout) {
+		getOperations().nwcloudEnableStateless(sessionTimeout);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-stateless
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud disable-stateless")
+	public boolean nwcloudDisableStatelessIsAvailable() {
+		return getOperations().nwcloudDisableStatelessIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud disable-stateless", help="Revert command nwcloud enable-stateless")
+	public void nwcloudDisableStateless() {
+		getOperations().nwcloudDisableStateless();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-warmup
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enable-warmup")
+	public boolean nwcloudEnableWarmupIsAvailable() {
+		return getOperations().nwcloudEnableWarmupIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enable-warmup", help="Replay representative requests and queries when a server process starts, before it serves its first request")
+	public void nwcloudEnableWarmup(
+			@CliOption(key = "iterations", mandatory = false, unspecifiedDefaultValue = "10", help = "Count of times each request and query is executed") int iterations) {
+		getOperations().nwcloudEnableWarmup(iterations);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-warmup
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud disable-warmup")
+	public boolean nwcloudDisableWarmupIsAvailable() {
+		return getOperations().nwcloudDisableWarmupIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud disable-warmup", help="Revert command nwcloud enable-warmup")
+	public void nwcloudDisableWarmup() {
+		getOperations().nwcloudDisableWarmup();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-async-web
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enable-async-web")
+	public boolean nwcloudEnableAsyncWebIsAvailable() {
+		return getOperations().nwcloudEnableAsyncWebIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enable-async-web", help="Enable asynchronous request processing (Servlet 3.0) with a bounded task executor, and convert controller methods to it")
+	public void nwcloudEnableAsyncWeb(
+			@CliOption(key = "poolSize", mandatory = false, unspecifiedDefaultValue = "20", help = "Maximum count of threads processing requests asynchronously") int poolSize,
+			@CliOption(key = "queueCapacity", mandatory = false, unspecifiedDefaultValue = "100", help = "Maximum count of requests waiting for a thread, further requests are rejected") int queueCapacity,
+			@CliOption(key = "timeout", mandatory = false, unspecifiedDefaultValue = "30000", help = "Milliseconds after which asynchronous requests time out") int timeout,
+			@CliOption(key = "methods", mandatory = false, help = "Comma separated list of controller methods to convert, e.g. PersonController.list") String methods,
+			@CliOption(key = "metadataComplete", mandatory = false, specifiedDefaultValue = "true", unspecifiedDefaultValue = "false", help = "Mark 'web.xml' as metadata-complete, so the server doesn't scan for annotations and web fragments") boolean metadataComplete,
+			@CliOption(key = "upgradeSpring", mandatory = false, specifiedDefaultValue = "true", unspecifiedDefaultValue = "false", help = "Upgrade the whole application to Spring 3.2 if an older version is used") boolean upgradeSpring) {
+		getOperations().nwcloudEnableAsyncWeb(poolSize, queueCapacity, timeout, methods, metadataComplete, upgradeSpring);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-async-web
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud disable-async-web")
+	public boolean nwcloudDisableAsyncWebIsAvailable() {
+		return getOperations().nwcloudDisableAsyncWebIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud disable-async-web", help="Revert command nwcloud enable-async-web")
+	public void nwcloudDisableAsyncWeb() {
+		getOperations().nwcloudDisableAsyncWeb();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enforce-paging
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enforce-paging")
+	public boolean nwcloudEnforcePagingIsAvailable() {
+		return getOperations().nwcloudEnforcePagingIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enforce-paging", help="Limit the count of entities returned by the list views, JSON lists and finders of scaffolded controllers")
+	public void nwcloudEnforcePaging(
+			@CliOption(key = "defaultSize", mandatory = false, unspecifiedDefaultValue = "10", help = "Count of entities per page if no size is requested") int defaultSize,
+			@CliOption(key = "maxSize", mandatory = false, unspecifiedDefaultValue = "100", help = "Maximum count of entities per page and of finder results") int maxSize,
+			@CliOption(key = "keyset", mandatory = false, specifiedDefaultValue = "true", unspecifiedDefaultValue = "false", help = "Add keyset paging (parameter afterId) to the JSON lists") boolean keyset) {
+		getOperations().nwcloudEnforcePaging(defaultSize, maxSize, keyset);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-fast-json
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enable-fast-json")
+	public boolean nwcloudEnableFastJsonIsAvailable() {
+		return getOperations().nwcloudEnableFastJsonIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enable-fast-json", help="Write the JSON responses of the controllers directly to the response stream")
+	public void nwcloudEnableFastJson() {
+		getOperations().nwcloudEnableFastJson();
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud import-data
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud import-data")
+	public boolean nwcloudImportDataIsAvailable() {
+		return getOperations().nwcloudImportDataIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud import-data", help="Import a CSV file into an entity in batches")
+	public void nwcloudImportData(
+			@CliOption(key = "entity", mandatory = true, optionContext = "update,project", help = "Entity to import the rows into") JavaType entity,
+			@CliOption(key = "file", mandatory = true, help = "CSV file with a header line (absolute or relative to the project)") String file,
+			@CliOption(key = "batchSize", mandatory = false, unspecifiedDefaultValue = "500", help = "Count of rows persisted in one transaction and JDBC batch") int batchSize,
+			@CliOption(key = "separator", mandatory = false, unspecifiedDefaultValue = ",", help = "Column separator (\"tab\" for tabulators)") String separator,
+			@CliOption(key = "run", mandatory = false, specifiedDefaultValue = "true", unspecifiedDefaultValue = "false", help = "Run the import with Maven right away") boolean run) {
+		getOperations().nwcloudImportData(entity, file, batchSize, separator, run);
+	}
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-finder-cache
+	// --------------------------------------------------------------------------------
+
+	@CliAvailabilityIndicator("nwcloud enable-finder-cache")
+	public boolean nwcloudEnableFinderCacheIsAvailable() {
+		return getOperations().nwcloudEnableFinderCacheIsAvailable();
+	}
+
+	@CliCommand(value = "nwcloud enable-finder-cache", help="Cache the results of the finders generated by Roo for entities in memory")
+	public void nwcloudEnableFinderCache(
+			@CliOption(key = "entities", mandatory = false, help = "Comma separated simple names of the entities whose finders are cached (default: all entities)") String entities,
+			@CliOption(key = "maxEntries", mandatory = false, unspecifiedDefaultValue = "1000", help = "Maximum count of finder results cached per entity") int maxEntries,
+			@CliOption(key = "timeToLive", mandatory = false, unspecifiedDefaultValue = "300", help = "Seconds a finder result is cached at most") int timeToLive) {
+		getOperations().nwcloudEnableFinderCache(entities, maxEntries, timeToLive);
 	}
 
 	// --------------------------------------------------------------------------------
@@ -131,7 +473,7 @@ public class NWCloudCommands implements CommandMarker {
 /*
 	@CliCommand(value = "nwcloud addon-debug", help="Show some output of the SAP HANA Cloud addon (for debugging only)")
 	public void nwcloudAddonDebug() {
-		operations.nwcloudAddonDebug();
+		getOperations().nwcloudAddonDebug();
 	}
 */
 	
@@ -16,6 +16,8 @@
 
 package com.sap.research.roo.addon.nwcloud;
 
+import org.springframework.roo.model.JavaType;
+
 /**
  * Roo Addon for SAP HANA Cloud - Operations Interface
  * ---------------------------------------------------
@@ -61,7 +63,7 @@ public interface NWCloudOperations {
 	
 	boolean nwcloudEnableJPAIsAvailable();
 	
-	void nwcloudEnableJPA();
+	void nwcloudEnableJPA(int warmUpConnections, String readReplica);
 
 	// --------------------------------------------------------------------------------
 	// nwcloud unenable-jpa
@@ -71,6 +73,166 @@ public interface NWCloudOperations {
 	
 	void nwcloudDisableJPA();
 
+	// --------------------------------------------------------------------------------
+	// nwcloud analyze-war
+	// --------------------------------------------------------------------------------
+	
+	boolean nwcloudAnalyzeWarIsAvailable();
+	
+	void nwcloudAnalyzeWar(String warFile, boolean excludeUnreferenced, String exclude);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud build
+	// --------------------------------------------------------------------------------
+	
+	boolean nwcloudBuildIsAvailable();
+	
+	void nwcloudBuild(String goals, boolean offline);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud deploy
+	// --------------------------------------------------------------------------------
+	
+	boolean nwcloudDeployIsAvailable();
+	
+	void nwcloudDeploy(boolean offline);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud tune-runtime
+	// --------------------------------------------------------------------------------
+	
+	boolean nwcloudTuneRuntimeIsAvailable();
+	
+	void nwcloudTuneRuntime(String profile, Integer minimumProcesses, Integer maximumProcesses, String loadTestResults, int loadTestProcesses, Double targetThroughput);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-web-cache
+	// --------------------------------------------------------------------------------
+	
+	boolean nwcloudEnableWebCacheIsAvailable();
+	
+	void nwcloudEnableWebCache(int cachePeriod);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-web-cache
+	// --------------------------------------------------------------------------------
+	
+	boolean nwcloudDisableWebCacheIsAvailable();
+	
+	void nwcloudDisableWebCache();
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-metrics
+	// --------------------------------------------------------------------------------
+	
+	boolean nwcloudEnableMetricsIsAvailable();
+	
+	void nwcloudEnableMetrics(String metricsPath, String role);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-metrics
+	// --------------------------------------------------------------------------------
+	
+	boolean nwcloudDisableMetricsIsAvailable();
+	
+	void nwcloudDisableMetrics();
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-asset-pipeline
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudEnableAssetPipelineIsAvailable();
+	
+	void nwcloudEnableAssetPipeline();
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-asset-pipeline
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudDisableAssetPipelineIsAvailable();
+	
+	void nwcloudDisableAssetPipeline();
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-stateless
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudEnableStatelessIsAvailable();
+	
+	void nwcloudEnableStateless(int sessionTimeout);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-stateless
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudDisableStatelessIsAvailable();
+	
+	void nwcloudDisableStateless();
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-warmup
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudEnableWarmupIsAvailable();
+	
+	void nwcloudEnableWarmup(int iterations);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-warmup
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudDisableWarmupIsAvailable();
+	
+	void nwcloudDisableWarmup();
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-async-web
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudEnableAsyncWebIsAvailable();
+	
+	void nwcloudEnableAsyncWeb(int poolSize, int queueCapacity, int timeout, String methods, boolean metadataComplete, boolean upgradeSpring);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud disable-async-web
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudDisableAsyncWebIsAvailable();
+	
+	void nwcloudDisableAsyncWeb();
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enforce-paging
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudEnforcePagingIsAvailable();
+	
+	void nwcloudEnforcePaging(int defaultSize, int maxSize, boolean keyset);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-fast-json
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudEnableFastJsonIsAvailable();
+	
+	void nwcloudEnableFastJson();
+
+	// --------------------------------------------------------------------------------
+	// nwcloud import-data
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudImportDataIsAvailable();
+	
+	void nwcloudImportData(JavaType entity, String file, int batchSize, String separator, boolean run);
+
+	// --------------------------------------------------------------------------------
+	// nwcloud enable-finder-cache
+	// --------------------------------------------------------------------------------
+
+	boolean nwcloudEnableFinderCacheIsAvailable();
+	
+	void nwcloudEnableFinderCache(String entities, int maxEntries, int timeToLive);
+
 	// --------------------------------------------------------------------------------
 	// nwcloud addon-debug
 	// --------------------------------------------------------------------------------
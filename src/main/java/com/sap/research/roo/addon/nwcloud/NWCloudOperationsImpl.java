@@ -16,10 +16,25 @@
 
 package com.sap.research.roo.addon.nwcloud;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.felix.scr.annotations.Component;
@@ -28,9 +43,21 @@ import org.apache.felix.scr.annotations.Service;
 
 import org.osgi.service.component.ComponentContext;
 
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.process.manager.MutableFile;
+import org.springframework.roo.project.Dependency;
+import org.springframework.roo.project.DependencyScope;
+import org.springframework.roo.project.DependencyType;
 import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.MavenOperations;
 import org.springframework.roo.project.maven.Pom;
 import org.springframework.roo.project.Path;
 import org.springframework.roo.project.PathResolver;
@@ -89,6 +116,34 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 	@Reference private ProjectOperations projectOperations;
 	@Reference private FileManager fileManager;
 	@Reference private PathResolver pathResolver;
+	@Reference private MavenOperations mavenOperations;
+	@Reference private TypeLocationService typeLocationService;
+
+	/**
+	 * Full qualified name of the Maven Daemon executable ("mvnd"), or an empty string if it is
+	 * not installed. It is looked up once on first use (see getMavenDaemonExecutable()).
+	 */
+	private volatile String mavenDaemonExecutable = null;
+
+	/**
+	 * The commands may run concurrently (e.g. triggered by scripts while the Roo shell is used). Each file
+	 * of the project is protected by one of FILE_LOCK_STRIPES locks (see getFileLock()) while it is read
+	 * or written. Changes are checked optimistically: a file is only written if it still has the content
+	 * that was read and changed (see writeXmlFile() and writeTextFile()). These file helpers are package-private,
+	 * so they can be tested without a running Roo shell (see NWCloudOperationsImplConcurrencyTest).
+	 */
+	private static final int FILE_LOCK_STRIPES = 32;
+	private final Object[] fileLocks = new Object[FILE_LOCK_STRIPES];
+	{
+		for (int i=0; i<fileLocks.length; i++) {
+			fileLocks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Key of the user data of documents read by readXmlFile(), storing the content of the file read
+	 */
+	private static final String FILE_VERSION = "nwcloud.fileVersion";
 
 	/**
 	 * This is called when our OSGi bundle is activated. We use this opportunity to store
@@ -145,7 +200,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 		this.backup(this.getPOM().getPath(), null);
 		Element configurationXml = XmlUtils.getConfiguration(getClass());
 		if (configurationXml!=null) {
-			this.updateBuildPlugins(configurationXml);
+			this.updateBuildPlugins(configurationXml, "nwcloud");
 		} else {
 			this.log.warning("NWCloud-AddOn: Getting 'src/main/resources/[...]/configuration.xml' from addon returned null.");
 		}
@@ -158,19 +213,21 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 	}
 
 	/**
-	 * This function will loop all build plugins defined by us in "src/main/resources/[...]/configuration.xml",
-	 * create a org.springframework.roo.project.Plugin object out of each, remove these from the "pom.xml",
-	 * and re-add them in the (raw) way defined by us. After this, all build plugins defined by us in
-	 * "configuration.xml" should be in "pom.xml" exactly in the way we defined them.
+	 * This function will loop all build plugins defined by us in "src/main/resources/[...]/configuration.xml"
+	 * in the passed section, create a org.springframework.roo.project.Plugin object out of each, remove these
+	 * from the "pom.xml", and re-add them in the (raw) way defined by us. After this, all build plugins defined
+	 * by us in this section of "configuration.xml" should be in "pom.xml" exactly in the way we defined them.
 	 * 
 	 * @param configuration org.w3c.dom.Element storing the content of "src/main/resources/[...]/configuration.xml"
+	 * @param section String of name of the section in "configuration.xml" (e.g. "nwcloud")
 	 */
-	private void updateBuildPlugins(Element configuration) {
+	private void updateBuildPlugins(Element configuration, String section) {
 
-		// Loop all "/configuration/nwcloud/build/plugins/plugin" elements in passed DOM element,
+		// Loop all "/configuration/[section]/build/plugins/plugin" elements in passed DOM element,
 		// create org.springframework.roo.project.Plugin objects out of them and remove these
 		// from the "pom.xml".
-		List<Element> xmlPlugins = XmlUtils.findElements("/configuration/nwcloud/build/plugins/plugin", configuration);
+		String xPath = "/configuration/" + section + "/build/plugins/plugin";
+		List<Element> xmlPlugins = XmlUtils.findElements(xPath, configuration);
 		if (xmlPlugins!=null) {
 			if (!xmlPlugins.isEmpty()) {
 
@@ -185,10 +242,10 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 				}
 
 			} else {
-				this.log.warning("NWCloud-AddOn: Getting elements '/configuration/nwcloud/build/plugins/plugin' from 'configuration.xml' returned 0 matching elements.");
+				this.log.warning("NWCloud-AddOn: Getting elements '" + xPath + "' from 'configuration.xml' returned 0 matching elements.");
 			}
 		} else {
-			this.log.warning("NWCloud-AddOn: Getting elements '/configuration/nwcloud/build/plugins/plugin' from 'configuration.xml' returned null.");
+			this.log.warning("NWCloud-AddOn: Getting elements '" + xPath + "' from 'configuration.xml' returned null.");
 		}
 	}
 	
@@ -219,7 +276,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 		if (plugin!=null) {
 
 			// Read "pom.xml" and store reference to root Element
-			Document document = XmlUtils.readXml(fileManager.getInputStream(this.getPOM().getPath()));
+			Document document = this.readXmlFile(this.getPOM().getPath());
 			Element root = document.getDocumentElement();
 	
 			// Loop through all elements in the path of the containing element that match the
@@ -247,7 +304,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 			DomUtils.removeTextNodes(pluginsElement);
 
 			// Update "pom.xml" file
-			fileManager.createOrUpdateTextFileIfRequired(this.getPOM().getPath(), XmlUtils.nodeToString(document), descriptionOfChange, true);
+			this.writeXmlFile(this.getPOM().getPath(), document, descriptionOfChange);
 
 		} else {
 			this.log.warning("NWCloud-AddOn: The given plugin object that should be removed from POM build plugins was null.");
@@ -265,7 +322,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 		if (pluginXML!=null) {
 
 			// Read "pom.xml" and store reference to root Element
-			Document document = XmlUtils.readXml(fileManager.getInputStream(this.getPOM().getPath()));
+			Document document = this.readXmlFile(this.getPOM().getPath());
 			Element root = document.getDocumentElement();
 	
 			// Get build plugins Element in POM
@@ -297,7 +354,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 				} else {
 					descriptionOfChange = "Added a raw build plugin";
 				}
-				fileManager.createOrUpdateTextFileIfRequired(this.getPOM().getPath(), XmlUtils.nodeToString(document), descriptionOfChange, true);
+				this.writeXmlFile(this.getPOM().getPath(), document, descriptionOfChange);
 
 			} else {
 				this.log.warning("NWCloud-AddOn: The build plugins element could not be found in the POM and thus, no new plugin element can be added to it.");
@@ -352,6 +409,12 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 	// --------------------------------------------------------------------------------
 	// Command: nwcloud enable-jpa
 	// --------------------------------------------------------------------------------
+
+	/**
+	 * JNDI names accepted for the read replica (e.g. "jdbc/ReplicaDB" or "java:comp/env/jdbc/ReplicaDB")
+	 */
+	private static final Pattern JNDI_NAME = Pattern.compile("[A-Za-z][\\w./:-]*");
+	private static final String HSQLDB_VERSION = "2.2.8";
 	
 	/**
 	 * This returns true if the command "nwcloud enable-jpa" of our addon should be available to the user.
@@ -375,8 +438,25 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 	/**
 	 * This is the command "nwcloud enable-jpa". It will configure the JPA persistence layer in a
 	 * way that will use the HANA Cloud persistence service.
+	 * 
+	 * @param warmUpConnections Count of connections to open and validate on startup of the application context
+	 *        (if greater than 0, the data source and the persistence unit are warmed up, see step 5)
+	 * @param readReplica String of JNDI name of a read replica, which read-only transactions are routed to (may be null, see step 4)
 	 */
-	public void nwcloudEnableJPA() {
+	public void nwcloudEnableJPA(int warmUpConnections, String readReplica) {
+
+		// The JNDI name of the replica is used in XPath expressions and as bean property, so only plain names are accepted
+		if ((readReplica!=null) && !readReplica.trim().isEmpty()) {
+			readReplica = readReplica.trim();
+			if (!JNDI_NAME.matcher(readReplica).matches()) {
+				this.log.warning("NWCloud-AddOn: '" + readReplica + "' is no valid JNDI name of a data source (e.g. jdbc/ReplicaDB), nothing was changed.");
+				return;
+			}
+			if (readReplica.equals("jdbc/DefaultDB")) {
+				this.log.warning("NWCloud-AddOn: The read replica needs a JNDI name other than the one of the primary database 'jdbc/DefaultDB', nothing was changed.");
+				return;
+			}
+		}
 
 		// TODO
 		// One could check here if ECLIPSELINK is used as JPA provider in persistence.xml
@@ -415,7 +495,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 		// Insert declaration for app server in "web.xml" to import DataSource from environment to JNDI
 
 		// Read "web.xml" and store reference to root Element
-		Document document = XmlUtils.readXml(fileManager.getInputStream(fileWebXml));
+		Document document = this.readXmlFile(fileWebXml);
 		Element root = document.getDocumentElement();
 
 		// Add JNDI ressource definition for JPA data source to use (if it does not yet exist)
@@ -438,7 +518,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 
 			// Update "web.xml"
 			String descriptionOfChange="Added JNDI ressource for JPA datasource";
-			fileManager.createOrUpdateTextFileIfRequired(fileWebXml, XmlUtils.nodeToString(document), descriptionOfChange, true);
+			this.writeXmlFile(fileWebXml, document, descriptionOfChange);
 
 		}
 
@@ -458,7 +538,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 		this.backup(fileSpringConf, null);
 
 		// Read "applicationContext.xml" and store reference to root Element
-		document = XmlUtils.readXml(fileManager.getInputStream(fileSpringConf));
+		document = this.readXmlFile(fileSpringConf);
 		root = document.getDocumentElement();
 
 		// Loop through all bean elements and remove all beans having id "dataSource"
@@ -476,7 +556,7 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 		}
 
 		// Update "applicationContext.xml" file if something has changed
-		fileManager.createOrUpdateTextFileIfRequired(fileSpringConf, XmlUtils.nodeToString(document), descriptionOfChange, true);
+		this.writeXmlFile(fileSpringConf, document, descriptionOfChange);
 
 		// Add bean for dynamic JNDI lookup of datasource (if it does not yet exist)
 		if (XmlUtils.findFirstElement("/beans/jndi-lookup[@id='dataSource']", root)==null) {
@@ -488,8 +568,154 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 			descriptionOfChange="Added bean for dynamic JNDI lookup of datasource";
 	
 			// Update "applicationContext.xml"
-			fileManager.createOrUpdateTextFileIfRequired(fileSpringConf, XmlUtils.nodeToString(document), descriptionOfChange, true);
+			this.writeXmlFile(fileSpringConf, document, descriptionOfChange);
+
+		}
+
+		// --------------------------------------------------------------------------------
+
+		// 4. Route read-only transactions to a read replica (if requested)
+		//    - Declare the DataSource of the replica in "web.xml" like the one of "jdbc/DefaultDB"
+		//    - Rename the JNDI lookup of "jdbc/DefaultDB" to "primaryDataSource", add one for the replica,
+		//      and declare the bean "dataSource" as routing data source on top of both
+		//			<jee:jndi-lookup id="primaryDataSource" jndi-name="jdbc/DefaultDB" />
+		//			<jee:jndi-lookup id="replicaDataSource" jndi-name="[readReplica]" />
+		//			<bean id="dataSource" class="org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy">
+		//				<property name="targetDataSource">
+		//					<bean class="[...].nwcloud.NWCloudReadWriteRoutingDataSource">
+		//						<property name="targetDataSources">
+		//							<map>
+		//								<entry key="primary" value-ref="primaryDataSource" />
+		//								<entry key="replica" value-ref="replicaDataSource" />
+		//							</map>
+		//						</property>
+		//						<property name="defaultTargetDataSource" ref="primaryDataSource" />
+		//					</bean>
+		//				</property>
+		//			</bean>
+		//      The routing data source decides on the data source when the connection is fetched, so the lazy
+		//      proxy defers fetching it until the first statement, when the transaction is set up completely.
+		String primaryDataSource = "dataSource";
+		if ((readReplica!=null) && !readReplica.trim().isEmpty()) {
+
+			String routingClass = this.copyTemplateToProject("NWCloudReadWriteRoutingDataSource", "Routing data source for read replica");
+			// Test of the routing with two embedded HSQLDB databases (run by "mvn test")
+			this.copyTemplateToProject(Path.SRC_TEST_JAVA, "NWCloudReadWriteRoutingDataSourceTest", "Test of routing data source with two embedded databases");
+			Document pom = this.readXmlFile(this.getPOM().getPath());
+			if (XmlUtils.findFirstElement("/project/dependencies/dependency[artifactId='hsqldb']", pom.getDocumentElement())==null) {
+				projectOperations.addDependency(projectOperations.getFocusedModuleName(), new Dependency("org.hsqldb", "hsqldb", HSQLDB_VERSION, DependencyType.JAR, DependencyScope.TEST));
+			}
+
+			Document webXmlDocument = this.readXmlFile(fileWebXml);
+			Element webXmlRoot = webXmlDocument.getDocumentElement();
+			if (XmlUtils.findFirstElement("/web-app/resource-ref[res-ref-name='" + readReplica + "']", webXmlRoot)==null) {
+				Element resRefElement = this.createChildElement(webXmlDocument, null, "resource-ref", null);
+				this.createChildElement(webXmlDocument, resRefElement, "res-ref-name", readReplica);
+				this.createChildElement(webXmlDocument, resRefElement, "res-type", "javax.sql.DataSource");
+				this.insertWebXmlElement(webXmlRoot, resRefElement);
+				this.writeXmlFile(fileWebXml, webXmlDocument, "Added JNDI ressource for read replica datasource");
+			}
+
+			primaryDataSource = "primaryDataSource";
+			Element jndiElement = XmlUtils.findFirstElement("/beans/jndi-lookup[@id='dataSource']", root);
+			if (jndiElement!=null) {
+				jndiElement.setAttribute("id", primaryDataSource);
+
+				Element replicaJndiElement = document.createElementNS("http://www.springframework.org/schema/jee", "jee:jndi-lookup");
+				replicaJndiElement.setAttribute("id", "replicaDataSource");
+				replicaJndiElement.setAttribute("jndi-name", readReplica);
+				root.appendChild(replicaJndiElement);
+
+				Element proxyElement = this.createChildElement(document, root, "bean", null);
+				proxyElement.setAttribute("id", "dataSource");
+				proxyElement.setAttribute("class", "org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy");
+				Element targetProperty = this.createChildElement(document, proxyElement, "property", null);
+				targetProperty.setAttribute("name", "targetDataSource");
+				Element routingElement = this.createChildElement(document, targetProperty, "bean", null);
+				routingElement.setAttribute("class", routingClass);
+				Element targetsProperty = this.createChildElement(document, routingElement, "property", null);
+				targetsProperty.setAttribute("name", "targetDataSources");
+				Element mapElement = this.createChildElement(document, targetsProperty, "map", null);
+				Element primaryEntry = this.createChildElement(document, mapElement, "entry", null);
+				primaryEntry.setAttribute("key", "primary");
+				primaryEntry.setAttribute("value-ref", primaryDataSource);
+				Element replicaEntry = this.createChildElement(document, mapElement, "entry", null);
+				replicaEntry.setAttribute("key", "replica");
+				replicaEntry.setAttribute("value-ref", "replicaDataSource");
+				Element defaultProperty = this.createChildElement(document, routingElement, "property", null);
+				defaultProperty.setAttribute("name", "defaultTargetDataSource");
+				defaultProperty.setAttribute("ref", primaryDataSource);
+
+				// Update "applicationContext.xml"
+				this.writeXmlFile(fileSpringConf, document, "Added routing of read-only transactions to read replica");
+			}
+
+		}
+
+		// --------------------------------------------------------------------------------
+
+		// 5. Warm up data source(s) and persistence unit on startup (if requested)
+		//    - Look up the datasource(s) once on startup and cache them (instead of relying on the defaults)
+		//			<jee:jndi-lookup id="dataSource" jndi-name="jdbc/DefaultDB" cache="true" lookup-on-startup="true" expected-type="javax.sql.DataSource" />
+		//    - Generate class "NWCloudDataSourceWarmUp" and declare a bean of it, which opens and validates the
+		//      given count of connections and initializes the persistence unit while the context starts
+		//			<bean id="nwcloudDataSourceWarmUp" class="[...].nwcloud.NWCloudDataSourceWarmUp">
+		//				<property name="dataSource" ref="dataSource" />
+		//				<property name="entityManagerFactory" ref="entityManagerFactory" />
+		//				<property name="connections" value="5" />
+		//			</bean>
+		//      If a read replica is used, the primary and the replica data source are warmed up by separate beans.
+		if (warmUpConnections>0) {
+
+			String warmUpClass = this.copyTemplateToProject("NWCloudDataSourceWarmUp", "Data source and persistence unit warm-up");
+
+			for (Element jndiElement : XmlUtils.findElements("/beans/jndi-lookup", root)) {
+				jndiElement.setAttribute("cache", "true");
+				jndiElement.setAttribute("lookup-on-startup", "true");
+				jndiElement.setAttribute("expected-type", "javax.sql.DataSource");
+			}
+
+			this.addDataSourceWarmUpBean(root, "nwcloudDataSourceWarmUp", warmUpClass, primaryDataSource, true, warmUpConnections);
+			if (XmlUtils.findFirstElement("/beans/jndi-lookup[@id='replicaDataSource']", root)!=null) {
+				this.addDataSourceWarmUpBean(root, "nwcloudReplicaDataSourceWarmUp", warmUpClass, "replicaDataSource", false, warmUpConnections);
+			}
+
+			// Update "applicationContext.xml"
+			this.writeXmlFile(fileSpringConf, document, "Added warm-up of datasource and persistence unit");
+
+		}
+
+	}
+
+	/**
+	 * Declare a bean warming up the passed data source (and the persistence unit) in "applicationContext.xml",
+	 * if a bean with the passed id does not exist yet.
+	 * 
+	 * @param root Element "beans" of "applicationContext.xml"
+	 * @param id String of bean id
+	 * @param warmUpClass String of full qualified name of the warm-up class
+	 * @param dataSource String of bean id of the data source to warm up
+	 * @param persistenceUnit If true, the persistence unit is warmed up as well
+	 * @param connections Count of connections to open and validate
+	 */
+	private void addDataSourceWarmUpBean(Element root, String id, String warmUpClass, String dataSource, boolean persistenceUnit, int connections) {
 
+		if (XmlUtils.findFirstElement("/beans/bean[@id='" + id + "']", root)==null) {
+			Document document = root.getOwnerDocument();
+			Element warmUpElement = this.createChildElement(document, root, "bean", null);
+			warmUpElement.setAttribute("id", id);
+			warmUpElement.setAttribute("class", warmUpClass);
+			Element propertyElement = this.createChildElement(document, warmUpElement, "property", null);
+			propertyElement.setAttribute("name", "dataSource");
+			propertyElement.setAttribute("ref", dataSource);
+			if (persistenceUnit) {
+				propertyElement = this.createChildElement(document, warmUpElement, "property", null);
+				propertyElement.setAttribute("name", "entityManagerFactory");
+				propertyElement.setAttribute("ref", "entityManagerFactory");
+			}
+			propertyElement = this.createChildElement(document, warmUpElement, "property", null);
+			propertyElement.setAttribute("name", "connections");
+			propertyElement.setAttribute("value", String.valueOf(connections));
 		}
 
 	}
@@ -535,220 +761,4030 @@ public class NWCloudOperationsImpl implements NWCloudOperations {
 		this.backupRevert(this.getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF") + File.separatorChar + "persistence.xml", "Restoring former JPA persistency config");
 		this.backupRevert(this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF") + File.separatorChar + "web.xml", "Restoring former web application config");
 		this.backupRevert(this.getPathResolved(Path.SPRING_CONFIG_ROOT, "applicationContext.xml"), "Restoring former Spring application config");
+		this.deleteProjectClass("NWCloudDataSourceWarmUp", "Delete data source and persistence unit warm-up");
+		this.deleteProjectClass("NWCloudReadWriteRoutingDataSource", "Delete routing data source for read replica");
+		this.deleteProjectClass(Path.SRC_TEST_JAVA, "NWCloudReadWriteRoutingDataSourceTest", "Delete test of routing data source");
 
 	}
 
 	// --------------------------------------------------------------------------------
-	// Command: nwcloud addon-debug
+	// Command: nwcloud analyze-war
 	// --------------------------------------------------------------------------------
 
 	/**
-	 * This is the command "nwcloud addon-debug". It will just dump some debug output to the
-	 * console, which could be useful during debugging of the addon. (Just for testing.)
+	 * This returns true if the command "nwcloud analyze-war" of our addon should be available to the user.
+	 * We just check if a "pom.xml" exists. Writing exclusions to the POM additionally needs the build
+	 * plugins added by "nwcloud enable-deploy", which is checked when the command is executed.
+	 * 
+	 * @return True if command can be used (POM exists), false otherwise
 	 */
-/*
-	public void nwcloudAddonDebug() {
+	public boolean nwcloudAnalyzeWarIsAvailable() {
 
-		System.out.println("Dumping out found POMs ('pom.xml' files):");
-		
-		// Dump POMs
-		System.out.println(" - projectOperations.getPoms()");
-		java.util.Collection<org.springframework.roo.project.maven.Pom> modPoms = projectOperations.getPoms();
-		for (org.springframework.roo.project.maven.Pom modPom : modPoms) {
-			System.out.println("    - modPom.getModuleName():  '"+ modPom.getModuleName()  +"'");
-			System.out.println("    - modPom.getGroupId():     '"+ modPom.getGroupId()     +"'");
-			System.out.println("    - modPom.getArtifactId():  '"+ modPom.getArtifactId()  +"'");
-			System.out.println("    - modPom.getDisplayName(): '"+ modPom.getDisplayName() +"'");
-			System.out.println("    - modPom.getRoot():        '"+ modPom.getRoot()        +"'");
-			System.out.println("    - modPom.getPath():        '"+ modPom.getPath()        +"'");
+		return (this.getPOM()!=null);
+
+	}
+
+	/**
+	 * This is the command "nwcloud analyze-war". It inspects the packaged WAR file of the project
+	 * and reports
+	 *  - the size of every jar embedded in "WEB-INF/lib",
+	 *  - classes that are contained more than once (in different jars or in a jar and in "WEB-INF/classes"),
+	 *  - jars that are never referenced by the application (see WarAnalyzer for the heuristic used).
+	 * 
+	 * As "nwcloud enable-deploy" configures the maven-bundle-plugin to embed all compile and runtime
+	 * dependencies into "WEB-INF/lib", the command is able to write exclusions for the jars that should
+	 * no longer be embedded into the "Embed-Dependency" instruction of the "pom.xml".
+	 * 
+	 * @param warFile String of the WAR file to analyze. If null, the WAR in the "target" folder of the project is used.
+	 * @param excludeUnreferenced If true, all jars that are never referenced will be excluded in the "pom.xml"
+	 * @param exclude Comma separated list of artifactIds to exclude in the "pom.xml" (may be null)
+	 */
+	public void nwcloudAnalyzeWar(String warFile, boolean excludeUnreferenced, String exclude) {
+
+		// 1. Find the WAR file to analyze (either the given one, or the one built by "mvn package")
+		File war = (warFile!=null) ? new File(warFile) : this.findPackagedWar();
+		if ((war==null) || !war.isFile()) {
+			this.log.warning("NWCloud-AddOn: No WAR file found to analyze. Please package the project first (e.g. 'perform package') or specify the WAR using option --war.");
+			return;
 		}
 
-		// Dump what we think is the actual pom.xml of the project
-		System.out.println("We think current root POM is:");
-		System.out.println(" - getPOM().getPath(): " + (this.getPOM()!=null?"'"+this.getPOM().getPath()+"'":"null") );
+		// 2. Analyze the WAR file
+		WarAnalyzer analyzer = new WarAnalyzer(war);
+		try {
+			analyzer.analyze();
+		} catch (IOException e) {
+			throw new IllegalStateException("NWCloud-AddOn: Could not analyze WAR file '"+war.getAbsolutePath()+"'.", e);
+		}
 
-		// Dump where we assume "src/main/resources/META-INF/persistence.xml" to be
-		System.out.println("The 'persistence.xml' file configuring JPA persistency should be here:");
-		System.out.println(" - getPathResolved(Path.SRC_MAIN_RESOURCES, \"META-INF\"+File.separatorChar+\"persistence.xml\"): '" + this.getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF"+File.separatorChar+"persistence.xml") + "'");
+		// 3. Report size by dependency, duplicate classes, and jars that are never referenced
+		List<WarAnalyzer.JarInfo> jars = analyzer.getJarsBySize();
+		long libSize = 0;
+		for (WarAnalyzer.JarInfo jar : jars) {
+			libSize += jar.compressedSize;
+		}
+		this.log.info("WAR file '" + war.getAbsolutePath() + "': " + WarAnalyzer.formatSize(analyzer.getWarSize()) + ", thereof " + WarAnalyzer.formatSize(libSize) + " in " + jars.size() + " jars in WEB-INF/lib");
+		this.log.info("Size by dependency (compressed in WAR):");
+		for (WarAnalyzer.JarInfo jar : jars) {
+			long percent = analyzer.getWarSize()>0 ? Math.round(100.0 * jar.compressedSize / analyzer.getWarSize()) : 0;
+			this.log.info(String.format("  %10s %3d%%  %s%s", WarAnalyzer.formatSize(jar.compressedSize), percent, jar.name, jar.referenced ? "" : "  [unreferenced]"));
+		}
 
-		// Dump if "src/main/resources/META-INF/persistence.xml" exists
-		System.out.println(" - Does '" + this.getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF"+File.separatorChar+"persistence.xml") + "' exist? " + fileManager.exists(this.getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF"+File.separatorChar+"persistence.xml")));
+		Map<String, Integer> duplicates = analyzer.getDuplicateClassesByLocations();
+		if (duplicates.isEmpty()) {
+			this.log.info("Duplicate classes: none");
+		} else {
+			this.log.info("Duplicate classes (" + analyzer.getDuplicateClasses().size() + " classes found in more than one location):");
+			for (Map.Entry<String, Integer> duplicate : duplicates.entrySet()) {
+				this.log.info("  " + duplicate.getValue() + " classes shared by: " + duplicate.getKey());
+			}
+		}
 
-		// Test logger output
-		System.out.println("Testing logger output with different levels:");
-		log.severe (" - Testing logging with level severe.");  // Output on console is red
-		log.warning(" - Testing logging with level warning."); // Output on console is purple
-		log.info   (" - Testing logging with level info.");    // Output on console is green
-		log.fine   (" - Testing logging with level fine.");    // Not shown in standard mode
-		log.finer  (" - Testing logging with level finer.");   // Not shown in standard mode
-		log.finest (" - Testing logging with level finest.");  // Not shown in standard mode
+		List<WarAnalyzer.JarInfo> unreferencedJars = analyzer.getUnreferencedJars();
+		if (unreferencedJars.isEmpty()) {
+			this.log.info("Unreferenced jars: none");
+		} else {
+			long unreferencedSize = 0;
+			for (WarAnalyzer.JarInfo jar : unreferencedJars) {
+				unreferencedSize += jar.compressedSize;
+			}
+			this.log.info("Unreferenced jars (" + unreferencedJars.size() + " jars, " + WarAnalyzer.formatSize(unreferencedSize) + "), please review before excluding them:");
+			for (WarAnalyzer.JarInfo jar : unreferencedJars) {
+				this.log.info("  " + jar.name + " (artifactId '" + jar.artifactId + "')");
+			}
+		}
+
+		// 4. Write exclusions to the "Embed-Dependency" instruction in "pom.xml" (if requested)
+		Set<String> exclusions = new TreeSet<String>();
+		if (excludeUnreferenced) {
+			for (WarAnalyzer.JarInfo jar : unreferencedJars) {
+				exclusions.add(jar.artifactId);
+			}
+		}
+		if (exclude!=null) {
+			for (String artifactId : exclude.split(",")) {
+				if (!artifactId.trim().isEmpty()) {
+					exclusions.add(artifactId.trim());
+				}
+			}
+		}
+		if (!exclusions.isEmpty()) {
+			this.addEmbedDependencyExclusions(exclusions);
+		}
 
-		// Example output:
-		//	Dumping out found POMs ('pom.xml' files):
-		//	 - projectOperations.getPoms()
-		//	    - modPom.getModuleName():  ''
-		//	    - modPom.getGroupId():     'com.sap.research'
-		//	    - modPom.getArtifactId():  'voting'
-		//	    - modPom.getDisplayName(): 'voting'
-		//	    - modPom.getRoot():        'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\'
-		//	    - modPom.getPath():        'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\pom.xml'
-		//	We think current root POM is:
-		//	 - getPOM().getPath(): 'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\pom.xml'
-		//	The 'persistence.xml' file configuring JPA persistency should be here:
-		//	 - getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF"+File.separatorChar+"persistence.xml"): 'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\src\main\resources\META-INF\persistence.xml'
-		//	 - Does 'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\src\main\resources\META-INF\persistence.xml' exist? true
-		//	Testing logger output with different levels:
-		//	 - Testing logging with level severe.
-		//	 - Testing logging with level warning.
-		//	 - Testing logging with level info.
-		
 	}
-*/
 
-	// --------------------------------------------------------------------------------
-	// Utility functions
-	// --------------------------------------------------------------------------------
+	/**
+	 * Find the WAR file created by "mvn package" in the "target" folder of the project. If the
+	 * WAR named by artifactId and version of the POM does not exist, the latest WAR in there is taken.
+	 * 
+	 * @return File of the packaged WAR, or null if there is none
+	 */
+	private File findPackagedWar() {
+
+		File targetDir = new File(this.getPOM().getRoot(), "target");
+		File war = new File(targetDir, this.getPOM().getArtifactId() + "-" + this.getPOM().getVersion() + ".war");
+		if (!war.isFile()) {
+			war = null;
+			File[] candidates = targetDir.listFiles();
+			if (candidates!=null) {
+				for (File candidate : candidates) {
+					if (candidate.isFile() && candidate.getName().endsWith(".war")) {
+						if ((war==null) || (candidate.lastModified()>war.lastModified())) {
+							war = candidate;
+						}
+					}
+				}
+			}
+		}
+
+		return war;
+
+	}
 
 	/**
-	 * Get the Pom object of the "pom.xml" of the current project.
-	 * Return null if there is none. If there is at least one POM, return the first.
-	 * The full qualified path to the "pom.xml" is available by calling getPath() on Pom object.
+	 * Add the passed artifactIds as negated "artifactId" clause to the "Embed-Dependency" instruction(s)
+	 * of the maven-bundle-plugin in "pom.xml", e.g. "*;scope=compile|runtime" becomes
+	 * "*;scope=compile|runtime;artifactId=!commons-logging|aopalliance". The maven-bundle-plugin negates
+	 * the whole list of alternatives by one leading "!", so a clause like "!a|!b" would only exclude "a".
+	 * Existing exclusions are kept (and normalized), artifactIds listed in an existing including clause
+	 * (e.g. "artifactId=a|b") are removed from it instead.
+	 * 
+	 * @param artifactIds Set of artifactIds that should no longer be embedded into the WAR
 	 */
-	protected Pom getPOM() {
-		
-		Pom currentPOM = null;
-		
-		// Get all POMs of the current project 
-		Collection<Pom> poms = projectOperations.getPoms();
-		
-		// If there is at least 1 POM in the collection, we return the first in there.
-		if (poms!=null) {
-			if (!poms.isEmpty()) {
-				currentPOM = poms.iterator().next();
-				if (poms.size()>1) {
-					log.warning("NWCloud-AddOn: There is more than one pom.xml in the project. Just took the first.");
+	private void addEmbedDependencyExclusions(Set<String> artifactIds) {
+
+		// Read "pom.xml" and store reference to root Element
+		Document document = this.readXmlFile(this.getPOM().getPath());
+		Element root = document.getDocumentElement();
+
+		List<Element> embedElements = XmlUtils.findElements("/project/build/plugins/plugin[artifactId='maven-bundle-plugin']/executions/execution/configuration/instructions/Embed-Dependency", root);
+		if (embedElements.isEmpty()) {
+			this.log.warning("NWCloud-AddOn: No 'Embed-Dependency' instruction found in the POM. Please use command 'nwcloud enable-deploy' first.");
+			return;
+		}
+
+		for (Element embedElement : embedElements) {
+
+			// Split instruction into its clauses and merge the exclusions into the "artifactId" clause
+			Set<String> excluded = new LinkedHashSet<String>();
+			Set<String> included = null;
+			StringBuilder value = new StringBuilder();
+			for (String clause : embedElement.getTextContent().trim().split(";")) {
+				if (clause.trim().startsWith("artifactId=")) {
+					String alternatives = clause.trim().substring("artifactId=".length()).trim();
+					boolean negated = alternatives.startsWith("!");
+					Set<String> values = new LinkedHashSet<String>();
+					for (String alternative : alternatives.split("\\|")) {
+						// Leading "!" of each alternative are removed (written by former versions of this addon)
+						String artifactId = alternative.trim().replaceFirst("^!+", "");
+						if (artifactId.length()>0) {
+							values.add(artifactId);
+						}
+					}
+					if (negated) {
+						excluded.addAll(values);
+					} else {
+						included = values;
+					}
+				} else if (!clause.trim().isEmpty()) {
+					value.append(value.length()>0 ? ";" : "").append(clause.trim());
 				}
 			}
+			Set<String> artifactIdValues;
+			String prefix;
+			if (included!=null) {
+				// Only the listed artifacts are embedded, so excluding means removing them from the list
+				included.removeAll(artifactIds);
+				included.removeAll(excluded);
+				if (included.isEmpty()) {
+					this.log.warning("NWCloud-AddOn: Excluding " + artifactIds + " would leave no artifact to embed in '" + embedElement.getTextContent().trim() + "', it is left unchanged.");
+					continue;
+				}
+				artifactIdValues = included;
+				prefix = "";
+			} else {
+				excluded.addAll(artifactIds);
+				artifactIdValues = excluded;
+				prefix = "!";
+			}
+			value.append(";artifactId=").append(prefix);
+			String separator = "";
+			for (String artifactIdValue : artifactIdValues) {
+				value.append(separator).append(artifactIdValue);
+				separator = "|";
+			}
+			embedElement.setTextContent(value.toString());
+
 		}
 
-		return currentPOM;
-		
+		// Update "pom.xml"
+		String descriptionOfChange = "Excluded from Embed-Dependency: " + artifactIds;
+		this.writeXmlFile(this.getPOM().getPath(), document, descriptionOfChange);
+
 	}
 
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud build
+	// --------------------------------------------------------------------------------
+
 	/**
-	 * Get the full qualified name of a file or directory, which is placed in the given
-	 * relative location under the project root dir. This is a convenience method that
-	 * is equal to getPathResolved(Path.ROOT, String relativeLocation).
+	 * This returns true if the command "nwcloud build" of our addon should be available to the user.
+	 * We just check if a "pom.xml" exists.
 	 * 
-	 * @param String relative location under project root (directory or file)
-	 * @return String project root + relative location
+	 * @return True if command can be used (POM exists), false otherwise
 	 */
-	public String getPathResolved(String relativeLocation) {
+	public boolean nwcloudBuildIsAvailable() {
 
-		return getPathResolved(Path.ROOT, relativeLocation);
+		return (this.getPOM()!=null);
 
 	}
 
 	/**
-	 * Get the full qualified name of a file or directory, which is placed in a special
-	 * folder under the project root (e.g. in Path.SRC_MAIN_JAVA) and from there in
-	 * the given relative location. So the overall filename will be assembled like:
-	 * project root + special path + relative location
+	 * This is the command "nwcloud build". It runs the given Maven goals (default "package") on the
+	 * project without leaving the Roo shell. See executeMaven(...) for how Maven is invoked.
 	 * 
-	 * @param Path specialPath See constants defined in org.springframework.roo.project.Path
-	 * @param String relative location under special path (directory or file)
-	 * @return String project root + special path + relative location
+	 * @param goals String of Maven goals and options to run (if null or empty, "package" is used)
+	 * @param offline If true, Maven is run in offline mode (no remote repository lookups)
 	 */
-	public String getPathResolved(Path specialPath, String relativeLocation) {
-		
-		Path sp = specialPath!=null ? specialPath : Path.ROOT;
-		String rl = relativeLocation!=null ? relativeLocation : "";
-		
-		return pathResolver.getIdentifier(LogicalPath.getInstance(sp, ""), rl);
+	public void nwcloudBuild(String goals, boolean offline) {
+
+		String tmpGoals = goals;
+		if ((goals==null) || goals.trim().isEmpty()) {
+			tmpGoals = "package";
+		}
+		this.executeMaven(tmpGoals, offline);
 
 	}
 
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud deploy
+	// --------------------------------------------------------------------------------
+
 	/**
-	 * Copy the file with name "fileName" from the resources of this addon
-	 * to the path "path" of the Roo project. The string "desc" will be
-	 * shown as additional description of the file operation on Roo shell.
-	 * If "desc" is null or an empty string, the description will be omitted.
-	 *  
-	 * @param path String of path where to copy the file in the Roo project
-	 * @param fileName String of the name of the file from addon resources that should be copied 
-	 * @param desc String of description of change (will be omitted if null or empty)
+	 * This returns true if the command "nwcloud deploy" of our addon should be available to the user.
+	 * The NWCloud-Maven-Plugin must have been integrated into the build using "nwcloud enable-deploy",
+	 * so we make the command available, if its reverse command "nwcloud disable-deploy" is available.
+	 * 
+	 * @return True if command can be used (deployment enabled), false otherwise
 	 */
-	private void copyFileFromAddonToProject(String path, String fileName, String desc) {
-		
-		if ((path!=null) && (fileName!=null)) {
+	public boolean nwcloudDeployIsAvailable() {
 
-			String targetFile = path + File.separatorChar + fileName;
-			
-			// Use MutableFile in combination with FileManager to take advantage of Roo's
-			// transactional file handling which offers automatic rollback if an exception occurs
-			MutableFile mutableFile = fileManager.exists(targetFile) ? fileManager.updateFile(targetFile) : fileManager.createFile(targetFile);
-			if (desc!=null) {
-				if (!desc.trim().isEmpty()) {
-					mutableFile.setDescriptionOfChange(desc);
-				}
-			}
-			
-            java.io.InputStream inputStream = null;
-            java.io.OutputStream outputStream = null;
-            try {
-                inputStream = FileUtils.getInputStream(this.getClass(), fileName);
-                outputStream = mutableFile.getOutputStream();
-                IOUtils.copy(inputStream, outputStream);
-            } catch (Exception e) {
-                throw new IllegalStateException("NWCloud-AddOn: Could not copy '"+fileName+"' from addon resources to '"+path+"'.",e);
-            } finally {
-                IOUtils.closeQuietly(inputStream);
-                IOUtils.closeQuietly(outputStream);
-            }
+		return nwcloudDisableDeployIsAvailable();
 
-		} else {
-			this.log.warning("NWCloud-AddOn: A file should be copyied from the addon resources to a ceratain path. But passed filename and/or path were null.");
-		}
+	}
+
+	/**
+	 * This is the command "nwcloud deploy". It packages the project and deploys the WAR to SAP HANA Cloud
+	 * using the goal "deploy" of the NWCloud-Maven-Plugin, which takes its settings from "nwcloud.properties".
+	 * 
+	 * @param offline If true, Maven is run in offline mode (no remote repository lookups)
+	 */
+	public void nwcloudDeploy(boolean offline) {
+
+		this.executeMaven("package nwcloud:deploy", offline);
 
 	}
 
 	/**
-	 * Copy file "sourceFile" to file "targetFile" within the Roo project.
-	 * The string "desc" will be shown as additional description of
-	 * the file operation on Roo shell. If "desc" is null or an empty
-	 * string, the description will be omitted.
+	 * Run Maven with the given goals in the root of the project and stream its output to the Roo shell.
 	 * 
-	 * @param sourceFile String of full qualified name of the file to copy
-	 * @param targetFile String of full qualified filename that the "fromFile" should be copied to 
-	 * @param desc String of description of change (will be omitted if null or empty)
+	 * If the Maven Daemon ("mvnd") is installed, it is used to run the build. The daemon keeps warm JVMs
+	 * alive between invocations, which cache the resolved project models, plugin class loaders and the
+	 * JIT compiled Maven code, so only the first build pays for the Maven startup. As the daemon is a
+	 * separate process, the Roo shell itself is not affected by the build (e.g. memory, class loading).
+	 * If the daemon is not available, Maven is run through the Roo MavenOperations (like Roo command "perform").
+	 * The build gets no input (e.g. a password prompt fails instead of blocking the Roo shell), and a failed
+	 * build is reported by an IllegalStateException.
+	 * 
+	 * @param goals String of Maven goals and options (values containing blanks can be quoted, e.g. -Dx="a b")
+	 * @param offline If true, option "-o" is added to run Maven in offline mode
 	 */
-	private void copyFileWithinProject(String sourceFile, String targetFile, String desc) {
-		
-		if ((sourceFile!=null) && (targetFile!=null)) {
+	private void executeMaven(String goals, boolean offline) {
 
-			if(fileManager.exists(sourceFile)) {
-				
-				// Use MutableFile in combination with FileManager to take advantage of Roo's
-				// transactional file handling which offers automatic rollback if an exception occurs
-				MutableFile mutableFile = fileManager.exists(targetFile) ? fileManager.updateFile(targetFile) : fileManager.createFile(targetFile);
-				if (desc!=null) {
-					if (!desc.trim().isEmpty()) {
+		String arguments = offline ? "-o " + goals.trim() : goals.trim();
+
+		String mavenDaemon = this.getMavenDaemonExecutable();
+		if (mavenDaemon==null) {
+			this.log.warning("NWCloud-AddOn: The Maven Daemon ('mvnd') is not installed (searched via MVND_HOME and the PATH), so Maven is started cold for this build. Install the Maven Daemon to reuse a warm Maven process for all builds.");
+			try {
+				mavenOperations.executeMvnCommand(arguments);
+			} catch (IOException e) {
+				throw new IllegalStateException("NWCloud-AddOn: Could not run Maven with '"+arguments+"'.", e);
+			}
+			return;
+		}
+
+		List<String> command = new ArrayList<String>();
+		command.add(mavenDaemon);
+		command.add("-B");
+		command.addAll(this.splitArguments(arguments));
+
+		this.log.info("NWCloud-AddOn: Running '" + command + "' using the Maven Daemon");
+		long startTime = System.currentTimeMillis();
+		BufferedReader reader = null;
+		try {
+			Process process = new ProcessBuilder(command).directory(new File(this.getPOM().getRoot())).redirectErrorStream(true).start();
+			// No input for the build, so prompts (e.g. for a missing password) fail instead of waiting forever
+			process.getOutputStream().close();
+			reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			String line;
+			while ((line = reader.readLine())!=null) {
+				this.log.info(line);
+			}
+			int exitValue = process.waitFor();
+			if (exitValue!=0) {
+				throw new IllegalStateException("NWCloud-AddOn: Maven build failed with exit code " + exitValue + " after " + (System.currentTimeMillis() - startTime) + " ms.");
+			}
+			this.log.info("NWCloud-AddOn: Maven build finished in " + (System.currentTimeMillis() - startTime) + " ms.");
+		} catch (IOException e) {
+			throw new IllegalStateException("NWCloud-AddOn: Could not run the Maven Daemon '"+mavenDaemon+"'.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("NWCloud-AddOn: Interrupted while waiting for the Maven build to finish.", e);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+
+	}
+
+	/**
+	 * Split command line arguments at blanks. Parts enclosed in double or single quotes may contain blanks,
+	 * the quotes are removed (e.g. -Dexec.args="a b" becomes the argument -Dexec.args=a b).
+	 * 
+	 * @param arguments String of arguments
+	 * @return List of String of arguments
+	 */
+	private List<String> splitArguments(String arguments) {
+
+		List<String> result = new ArrayList<String>();
+		StringBuilder argument = new StringBuilder();
+		boolean inArgument = false;
+		char quote = 0;
+		for (int i=0; i<arguments.length(); i++) {
+			char c = arguments.charAt(i);
+			if (quote!=0) {
+				if (c==quote) {
+					quote = 0;
+				} else {
+					argument.append(c);
+				}
+			} else if ((c=='"') || (c=='\'')) {
+				quote = c;
+				inArgument = true;
+			} else if (Character.isWhitespace(c)) {
+				if (inArgument) {
+					result.add(argument.toString());
+					argument.setLength(0);
+					inArgument = false;
+				}
+			} else {
+				argument.append(c);
+				inArgument = true;
+			}
+		}
+		if (quote!=0) {
+			throw new IllegalArgumentException("NWCloud-AddOn: Unterminated quote in '" + arguments + "'.");
+		}
+		if (inArgument) {
+			result.add(argument.toString());
+		}
+		return result;
+
+	}
+
+	/**
+	 * Get the executable of the Maven Daemon. It is searched in "$MVND_HOME/bin" first and then in
+	 * the directories of the PATH. The result of the search is cached for the lifetime of the addon.
+	 * 
+	 * @return String of full qualified name of the "mvnd" executable, or null if it is not installed
+	 */
+	private String getMavenDaemonExecutable() {
+
+		if (this.mavenDaemonExecutable==null) {
+
+			String executableName = File.separatorChar=='\\' ? "mvnd.cmd" : "mvnd";
+			List<String> searchPath = new ArrayList<String>();
+			if (System.getenv("MVND_HOME")!=null) {
+				searchPath.add(System.getenv("MVND_HOME") + File.separatorChar + "bin");
+			}
+			if (System.getenv("PATH")!=null) {
+				searchPath.addAll(Arrays.asList(System.getenv("PATH").split(File.pathSeparator)));
+			}
+
+			String result = "";
+			for (String dir : searchPath) {
+				File executable = new File(dir, executableName);
+				if (executable.isFile()) {
+					result = executable.getAbsolutePath();
+					break;
+				}
+			}
+			this.mavenDaemonExecutable = result;
+
+		}
+
+		return this.mavenDaemonExecutable.isEmpty() ? null : this.mavenDaemonExecutable;
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud tune-runtime
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * This returns true if the command "nwcloud tune-runtime" of our addon should be available to the user.
+	 * The settings are written to "nwcloud.properties", so "nwcloud enable-deploy" must have been used before,
+	 * which is the case if its reverse command "nwcloud disable-deploy" is available.
+	 * 
+	 * @return True if command can be used (nwcloud.properties exists), false otherwise
+	 */
+	public boolean nwcloudTuneRuntimeIsAvailable() {
+
+		return nwcloudDisableDeployIsAvailable();
+
+	}
+
+	/**
+	 * This is the command "nwcloud tune-runtime". It writes the runtime settings of the profile with the
+	 * given name (as defined in "src/main/resources/[...]/configuration.xml") to "nwcloud.properties", i.e.
+	 * Java version, minimum and maximum count of server processes, logging severity and JVM arguments.
+	 * 
+	 * If the results of a local load test are passed together with the throughput the application should
+	 * be able to handle, the count of server processes is calculated from the throughput measured in the
+	 * load test. The settings are validated as a whole before "nwcloud.properties" is changed.
+	 * 
+	 * @param profile String of profile name (e.g. "latency", "throughput" or "small")
+	 * @param minimumProcesses Minimum count of server processes overriding the profile (may be null)
+	 * @param maximumProcesses Maximum count of server processes overriding the profile (may be null)
+	 * @param loadTestResults String of CSV file with results of a local load test (JMeter format, may be null)
+	 * @param loadTestProcesses Count of server processes that served the load test
+	 * @param targetThroughput Requests per second the application should be able to handle (may be null)
+	 */
+	public void nwcloudTuneRuntime(String profile, Integer minimumProcesses, Integer maximumProcesses, String loadTestResults, int loadTestProcesses, Double targetThroughput) {
+
+		// 1. Get settings of the profile from "src/main/resources/[...]/configuration.xml"
+		Map<String, String> settings = this.getRuntimeProfile(profile);
+		if (settings.isEmpty()) {
+			this.log.warning("NWCloud-AddOn: Unknown runtime profile '"+profile+"'. Available profiles are: " + this.getRuntimeProfileNames());
+			return;
+		}
+
+		// 2. Recommend count of server processes based on load test results (if given)
+		if (loadTestResults!=null) {
+			int[] processes = this.recommendProcesses(profile, loadTestResults, loadTestProcesses, targetThroughput);
+			if (processes!=null) {
+				settings.put("minimum-processes", String.valueOf(processes[0]));
+				settings.put("maximum-processes", String.valueOf(processes[1]));
+			}
+		}
+
+		// 3. Explicitly given counts of server processes always win
+		if (minimumProcesses!=null) {
+			settings.put("minimum-processes", String.valueOf(minimumProcesses));
+		}
+		if (maximumProcesses!=null) {
+			settings.put("maximum-processes", String.valueOf(maximumProcesses));
+		}
+
+		// 4. Validate the combination of settings and update "nwcloud.properties"
+		List<String> problems = this.validateRuntimeSettings(profile, settings);
+		if (!problems.isEmpty()) {
+			for (String problem : problems) {
+				this.log.warning("NWCloud-AddOn: " + problem);
+			}
+			this.log.warning("NWCloud-AddOn: 'nwcloud.properties' has not been changed.");
+			return;
+		}
+		for (Map.Entry<String, String> setting : settings.entrySet()) {
+			this.log.info("  " + setting.getKey() + "=" + setting.getValue());
+		}
+		this.updatePropertiesFile(this.getPOM().getRoot() + File.separatorChar + "nwcloud.properties", settings, "Applied runtime profile '" + profile + "'");
+
+	}
+
+	/**
+	 * Get the runtime settings of a profile defined in "src/main/resources/[...]/configuration.xml"
+	 * as "/configuration/nwcloudruntime/profile/property" elements.
+	 * 
+	 * @param profile String of profile name
+	 * @return Map of property names and values in the order defined (empty if profile does not exist)
+	 */
+	private Map<String, String> getRuntimeProfile(String profile) {
+
+		Map<String, String> result = new LinkedHashMap<String, String>();
+
+		Element configurationXml = XmlUtils.getConfiguration(getClass());
+		if ((configurationXml!=null) && (profile!=null)) {
+			for (Element profileElement : XmlUtils.findElements("/configuration/nwcloudruntime/profile", configurationXml)) {
+				if (profileElement.getAttribute("name").equalsIgnoreCase(profile.trim())) {
+					for (Element property : XmlUtils.findElements("property", profileElement)) {
+						result.put(property.getAttribute("name"), property.getAttribute("value"));
+					}
+				}
+			}
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * @return List of names of the runtime profiles defined in "src/main/resources/[...]/configuration.xml"
+	 */
+	private List<String> getRuntimeProfileNames() {
+
+		List<String> result = new ArrayList<String>();
+
+		Element configurationXml = XmlUtils.getConfiguration(getClass());
+		if (configurationXml!=null) {
+			for (Element profileElement : XmlUtils.findElements("/configuration/nwcloudruntime/profile", configurationXml)) {
+				result.add(profileElement.getAttribute("name"));
+			}
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * Read the results of a local load test, report them, and calculate the minimum and maximum count of
+	 * server processes needed to handle the target throughput. The maximum is sized so that each process
+	 * runs at 70% of the throughput measured per process (headroom for peaks and garbage collection). The
+	 * minimum is the count needed at full utilization, for profile "latency" at least 2 (one warm spare).
+	 * 
+	 * @return int[] {minimum, maximum} count of server processes, or null if no recommendation is possible
+	 */
+	private int[] recommendProcesses(String profile, String loadTestResults, int loadTestProcesses, Double targetThroughput) {
+
+		LoadTestResults results;
+		java.io.InputStream inputStream = null;
+		try {
+			inputStream = new java.io.FileInputStream(loadTestResults);
+			results = LoadTestResults.read(inputStream);
+		} catch (IOException e) {
+			throw new IllegalStateException("NWCloud-AddOn: Could not read load test results from '"+loadTestResults+"'.", e);
+		} catch (IllegalArgumentException e) {
+			this.log.warning("NWCloud-AddOn: Could not use load test results from '"+loadTestResults+"': " + e.getMessage());
+			return null;
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+
+		double throughputPerProcess = results.getThroughput() / Math.max(1, loadTestProcesses);
+		this.log.info(String.format("Load test: %d requests in %.1f s, %.1f requests/s (%.1f per process), %.1f%% errors, latency median %d ms, 95%% %d ms, 99%% %d ms",
+				results.samples, results.durationMillis / 1000.0, results.getThroughput(), throughputPerProcess, results.getErrorRate(), results.medianMillis, results.p95Millis, results.p99Millis));
+		if (results.getErrorRate()>1.0) {
+			this.log.warning("NWCloud-AddOn: More than 1% of the requests in the load test failed, so the measured throughput might be too optimistic.");
+		}
+
+		if (targetThroughput==null) {
+			this.log.info("Use option --targetThroughput to get a recommendation for the count of server processes.");
+			return null;
+		}
+
+		int minimum = (int) Math.ceil(targetThroughput / throughputPerProcess);
+		int maximum = (int) Math.ceil(targetThroughput / (throughputPerProcess * 0.7));
+		if ("latency".equalsIgnoreCase(profile)) {
+			minimum = Math.max(2, minimum);
+		}
+		minimum = Math.max(1, minimum);
+		maximum = Math.max(minimum, maximum);
+		this.log.info("Recommended for " + targetThroughput + " requests/s: minimum-processes=" + minimum + ", maximum-processes=" + maximum);
+
+		return new int[] { minimum, maximum };
+
+	}
+
+	/**
+	 * Check that the passed runtime settings fit together.
+	 * 
+	 * @return List of problems found (empty if the settings are valid)
+	 */
+	private List<String> validateRuntimeSettings(String profile, Map<String, String> settings) {
+
+		List<String> problems = new ArrayList<String>();
+
+		// Count of server processes
+		int minimum = 1;
+		int maximum = 1;
+		try {
+			minimum = Integer.parseInt(settings.get("minimum-processes"));
+			maximum = Integer.parseInt(settings.get("maximum-processes"));
+		} catch (NumberFormatException e) {
+			problems.add("The count of server processes must be a number.");
+		}
+		if (minimum<1) {
+			problems.add("minimum-processes must be at least 1, but is " + minimum + ".");
+		}
+		if (maximum<minimum) {
+			problems.add("maximum-processes (" + maximum + ") must not be less than minimum-processes (" + minimum + ").");
+		}
+
+		// Logging severity: debug and info output costs throughput in production
+		String severity = settings.get("severity");
+		if ((severity!=null) && !Arrays.asList("error", "warn", "info", "debug").contains(severity)) {
+			problems.add("severity must be one of error|warn|info|debug, but is '" + severity + "'.");
+		}
+		if (("debug".equals(severity) || "info".equals(severity)) && !"small".equalsIgnoreCase(profile)) {
+			problems.add("severity '" + severity + "' slows down the application and should only be used with profile 'small'.");
+		}
+
+		// JVM arguments must match the Java version
+		int javaVersion = 6;
+		try {
+			javaVersion = Integer.parseInt(settings.containsKey("java-version") ? settings.get("java-version") : "6");
+		} catch (NumberFormatException e) {
+			problems.add("java-version must be a number.");
+		}
+		String vmArguments = settings.containsKey("vm-arguments") ? settings.get("vm-arguments") : "";
+		if ((javaVersion<7) && vmArguments.contains("-XX:+UseG1GC")) {
+			problems.add("The G1 garbage collector (-XX:+UseG1GC) needs java-version 7 or higher.");
+		}
+		if ((javaVersion>=8) && vmArguments.contains("PermSize")) {
+			problems.add("The permanent generation has been removed in Java 8, use -XX:MaxMetaspaceSize instead of -XX:(Max)PermSize.");
+		}
+		int collectors = 0;
+		for (String collector : new String[] { "-XX:+UseSerialGC", "-XX:+UseParallelGC", "-XX:+UseConcMarkSweepGC", "-XX:+UseG1GC" }) {
+			if (vmArguments.contains(collector)) {
+				collectors++;
+			}
+		}
+		if (collectors>1) {
+			problems.add("More than one garbage collector is selected in vm-arguments.");
+		}
+		long initialHeap = this.getHeapSizeArgument(vmArguments, "-Xms");
+		long maximumHeap = this.getHeapSizeArgument(vmArguments, "-Xmx");
+		if ((initialHeap>0) && (maximumHeap>0) && (initialHeap>maximumHeap)) {
+			problems.add("The initial heap size (-Xms) must not be larger than the maximum heap size (-Xmx).");
+		}
+
+		return problems;
+
+	}
+
+	/**
+	 * Get the size in bytes of a heap size argument like "-Xmx512m" from the passed JVM arguments.
+	 * 
+	 * @return long of size in bytes, or -1 if the argument is not contained
+	 */
+	private long getHeapSizeArgument(String vmArguments, String argument) {
+
+		Matcher matcher = Pattern.compile(argument + "(\\d+)([kKmMgG]?)").matcher(vmArguments);
+		if (!matcher.find()) {
+			return -1;
+		}
+		long size = Long.parseLong(matcher.group(1));
+		String unit = matcher.group(2).toLowerCase();
+		if (unit.equals("k")) {
+			size *= 1024;
+		} else if (unit.equals("m")) {
+			size *= 1024 * 1024;
+		} else if (unit.equals("g")) {
+			size *= 1024 * 1024 * 1024;
+		}
+		return size;
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enable-web-cache
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Names of the filters added to "web.xml" by "nwcloud enable-web-cache"
+	 */
+	private static final String GZIP_FILTER_NAME = "nwcloudGzipFilter";
+	private static final String ETAG_FILTER_NAME = "nwcloudEtagFilter";
+
+	/**
+	 * ETag filter of Spring, and the subclass skipping the JSON responses streamed by "nwcloud enable-fast-json"
+	 */
+	private static final String ETAG_FILTER_CLASS = "org.springframework.web.filter.ShallowEtagHeaderFilter";
+	private static final String STREAMING_ETAG_FILTER_NAME = "NWCloudEtagFilter";
+
+	/**
+	 * This returns true if the command "nwcloud enable-web-cache" of our addon should be available to the user.
+	 * We check if the project has a "web.xml" and if the reverse command "nwcloud disable-web-cache" is unavailable.
+	 * 
+	 * @return True if command can be used (web project without caching filters), false otherwise
+	 */
+	public boolean nwcloudEnableWebCacheIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath())) {
+			result = !nwcloudDisableWebCacheIsAvailable();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This is the command "nwcloud enable-web-cache". It will do three things:
+	 * 1.) Generate the class "NWCloudGzipFilter" in the project, and register it in "web.xml" for all requests.
+	 *     It compresses textual responses (HTML, CSS, JavaScript, JSON, XML) if the client accepts gzip.
+	 * 2.) Register Spring's ShallowEtagHeaderFilter in "web.xml" for the dispatcher servlet. It adds an ETag
+	 *     header to the generated responses (views, JSON) and answers conditional requests with "304 Not Modified",
+	 *     so unchanged content is not transferred again. It runs inside the gzip filter, so the ETag is
+	 *     calculated on the uncompressed content. If the JSON responses are streamed ("nwcloud enable-fast-json"),
+	 *     the generated subclass "NWCloudEtagFilter" skipping the JSON requests is registered instead, because
+	 *     the ETag filter buffers the whole response.
+	 * 3.) Set the "cache-period" of the static resources served by Spring ("mvc:resources" in "webmvc-config.xml"),
+	 *     which adds "Expires" and "Cache-Control" headers to them.
+	 * 
+	 * @param cachePeriod Seconds the static resources may be cached by clients and proxies
+	 */
+	public void nwcloudEnableWebCache(int cachePeriod) {
+
+		// 1. Generate gzip filter class
+		String filterClass = this.copyTemplateToProject("NWCloudGzipFilter", "Gzip compression filter");
+
+		// 2. Register gzip and ETag filters in "web.xml"
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		Element root = document.getDocumentElement();
+
+		this.addWebXmlFilter(root, GZIP_FILTER_NAME, filterClass, null, "/*", null);
+		String etagFilterClass = ETAG_FILTER_CLASS;
+		if (fileManager.exists(this.getProjectClassPath(JSON_CONVERTER_NAME))) {
+			etagFilterClass = this.copyTemplateToProject(STREAMING_ETAG_FILTER_NAME, "ETag filter skipping streamed JSON responses");
+		}
+		String dispatcherServlet = this.getDispatcherServletName(root);
+		if (dispatcherServlet!=null) {
+			this.addWebXmlFilter(root, ETAG_FILTER_NAME, etagFilterClass, null, null, dispatcherServlet);
+		} else {
+			this.log.warning("NWCloud-AddOn: No Spring DispatcherServlet found in 'web.xml', so the ETag filter is registered for all requests.");
+			this.addWebXmlFilter(root, ETAG_FILTER_NAME, etagFilterClass, null, "/*", null);
+		}
+		this.writeXmlFile(fileWebXml, document, "Added gzip compression and ETag filters");
+
+		// 3. Set cache period of static resources in "webmvc-config.xml"
+		this.setResourcesCachePeriod(String.valueOf(cachePeriod), "Added cache headers for static resources");
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud disable-web-cache
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * This returns true if the command "nwcloud disable-web-cache" of our addon should be available to
+	 * the user. We check if the gzip filter added by "nwcloud enable-web-cache" is registered in "web.xml".
+	 * 
+	 * @return True if command can be used (caching filters registered), false otherwise
+	 */
+	public boolean nwcloudDisableWebCacheIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath())) {
+			Element root = this.readXmlFile(this.getWebXmlPath()).getDocumentElement();
+			result = (XmlUtils.findFirstElement("/web-app/filter[filter-name='" + GZIP_FILTER_NAME + "']", root)!=null);
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This command will revert the command "nwcloud enable-web-cache". Instead of restoring a backup,
+	 * only the changes made by "nwcloud enable-web-cache" are removed, so later changes of the files
+	 * (e.g. by other commands) are kept.
+	 */
+	public void nwcloudDisableWebCache() {
+
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		this.removeWebXmlFilter(document.getDocumentElement(), GZIP_FILTER_NAME);
+		this.removeWebXmlFilter(document.getDocumentElement(), ETAG_FILTER_NAME);
+		this.writeXmlFile(fileWebXml, document, "Removed gzip compression and ETag filters");
+
+		this.setResourcesCachePeriod(null, "Removed cache headers for static resources");
+		this.deleteProjectClass("NWCloudGzipFilter", "Delete gzip compression filter");
+		this.deleteProjectClass(STREAMING_ETAG_FILTER_NAME, "Delete ETag filter skipping streamed JSON responses");
+
+	}
+
+	/**
+	 * Set (or remove, if "cachePeriod" is null) the attribute "cache-period" of the "mvc:resources" element
+	 * in "webmvc-config.xml" serving the static resources of the project under "/resources/**".
+	 */
+	private void setResourcesCachePeriod(String cachePeriod, String desc) {
+
+		String fileWebMvcConfig = this.getWebMvcConfigPath();
+		if (!fileManager.exists(fileWebMvcConfig)) {
+			this.log.warning("NWCloud-AddOn: No Spring MVC configuration found at '" + fileWebMvcConfig + "', so the cache headers of static resources are unchanged.");
+			return;
+		}
+
+		Document document = this.readXmlFile(fileWebMvcConfig);
+		Element resources = XmlUtils.findFirstElement("/beans/resources[@mapping='/resources/**']", document.getDocumentElement());
+		if (resources!=null) {
+			if (cachePeriod!=null) {
+				resources.setAttribute("cache-period", cachePeriod);
+			} else {
+				resources.removeAttribute("cache-period");
+			}
+			this.writeXmlFile(fileWebMvcConfig, document, desc);
+		} else {
+			this.log.warning("NWCloud-AddOn: No 'mvc:resources' element for '/resources/**' found in '" + fileWebMvcConfig + "'.");
+		}
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enable-metrics
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Name of the filter and of the security constraint added to "web.xml" by "nwcloud enable-metrics"
+	 */
+	private static final String METRICS_FILTER_NAME = "nwcloudMetricsFilter";
+	private static final String METRICS_RESOURCE_NAME = "nwcloudMetrics";
+
+	/**
+	 * Name of the EclipseLink property to register a session profiler in "persistence.xml"
+	 */
+	private static final String ECLIPSELINK_PROFILER = "eclipselink.profiler";
+
+	/**
+	 * This returns true if the command "nwcloud enable-metrics" of our addon should be available to the user.
+	 * We check if the project has a "web.xml". The command can be run again to change the path or the role.
+	 * 
+	 * @return True if command can be used (web project), false otherwise
+	 */
+	public boolean nwcloudEnableMetricsIsAvailable() {
+
+		return (this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath());
+
+	}
+
+	/**
+	 * This is the command "nwcloud enable-metrics". It will do three things:
+	 * 1.) Generate the classes "NWCloudMetrics" (in-memory latency histograms, exposed via JMX),
+	 *     "NWCloudMetricsFilter" and "NWCloudQueryProfiler" in the project.
+	 * 2.) Register the filter in "web.xml" as first filter for all requests, so it measures the latency of
+	 *     each endpoint and serves the metrics as JSON under "metricsPath". Access to this path is protected
+	 *     by a security constraint requiring the given role (and checked by the filter as well). If the
+	 *     metrics are enabled already, the path and the role of the filter and the constraint are updated.
+	 * 3.) Register the profiler in "persistence.xml" (property "eclipselink.profiler"), so the latency of
+	 *     each JPA query is measured.
+	 * 
+	 * @param metricsPath String of the path serving the metrics as JSON (e.g. "/nwcloud/metrics")
+	 * @param role String of the role needed to access the metrics
+	 */
+	public void nwcloudEnableMetrics(String metricsPath, String role) {
+
+		// 1. Generate classes
+		this.copyTemplateToProject("NWCloudMetrics", "In-memory latency histograms");
+		String filterClass = this.copyTemplateToProject("NWCloudMetricsFilter", "Request timing filter");
+		String profilerClass = this.copyTemplateToProject("NWCloudQueryProfiler", "EclipseLink query timing profiler");
+
+		// 2. Register filter and protect metrics endpoint in "web.xml"
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		Element root = document.getDocumentElement();
+
+		Map<String, String> initParams = new LinkedHashMap<String, String>();
+		initParams.put("metricsPath", metricsPath);
+		initParams.put("role", role);
+		Element filter = XmlUtils.findFirstElement("/web-app/filter[filter-name='" + METRICS_FILTER_NAME + "']", root);
+		if (filter!=null) {
+			// Enabled before, keep the filter (and its mappings, e.g. for asynchronous requests) and update its settings
+			this.setWebXmlInitParams(filter, initParams);
+		} else {
+			this.addWebXmlFilter(root, METRICS_FILTER_NAME, filterClass, initParams, "/*", null);
+		}
+		// Move the mapping in front of all others, so the filter measures the whole filter chain
+		Element filterMapping = XmlUtils.findFirstElement("/web-app/filter-mapping[filter-name='" + METRICS_FILTER_NAME + "']", root);
+		Element firstFilterMapping = XmlUtils.findFirstElement("/web-app/filter-mapping", root);
+		if (filterMapping!=firstFilterMapping) {
+			root.insertBefore(filterMapping, firstFilterMapping);
+		}
+
+		// Replace the constraint of a former run, and its role if no other constraint needs it anymore
+		this.removeMetricsConstraint(root);
+		Element securityConstraint = this.createChildElement(document, null, "security-constraint", null);
+		Element resourceCollection = this.createChildElement(document, securityConstraint, "web-resource-collection", null);
+		this.createChildElement(document, resourceCollection, "web-resource-name", METRICS_RESOURCE_NAME);
+		this.createChildElement(document, resourceCollection, "url-pattern", metricsPath);
+		Element authConstraint = this.createChildElement(document, securityConstraint, "auth-constraint", null);
+		this.createChildElement(document, authConstraint, "role-name", role);
+		this.insertWebXmlElement(root, securityConstraint);
+		if (XmlUtils.findFirstElement("/web-app/login-config", root)==null) {
+			// Basic authentication needs no login pages, so it works on a local server as well as on SAP HANA Cloud
+			Element loginConfig = this.createChildElement(document, null, "login-config", null);
+			this.createChildElement(document, loginConfig, "auth-method", "BASIC");
+			this.insertWebXmlElement(root, loginConfig);
+		}
+		if (XmlUtils.findFirstElement("/web-app/security-role[role-name='" + role + "']", root)==null) {
+			Element securityRole = this.createChildElement(document, null, "security-role", null);
+			this.createChildElement(document, securityRole, "role-name", role);
+			this.insertWebXmlElement(root, securityRole);
+		}
+
+		this.writeXmlFile(fileWebXml, document, "Added request metrics filter and protected metrics endpoint");
+
+		// 3. Register query profiler in "persistence.xml"
+		if (!this.setPersistenceUnitProperty(ECLIPSELINK_PROFILER, profilerClass, "Added EclipseLink query metrics profiler")) {
+			this.log.warning("NWCloud-AddOn: No JPA persistence unit found, so only the latency of requests will be measured.");
+		}
+
+		this.log.info("NWCloud-AddOn: Metrics are available as JSON at '" + metricsPath + "' for users with role '" + role + "' and via JMX as 'nwcloud:type=Metrics'.");
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud disable-metrics
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * This returns true if the command "nwcloud disable-metrics" of our addon should be available to
+	 * the user. We check if the metrics filter added by "nwcloud enable-metrics" is registered in "web.xml".
+	 * 
+	 * @return True if command can be used (metrics filter registered), false otherwise
+	 */
+	public boolean nwcloudDisableMetricsIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath())) {
+			Element root = this.readXmlFile(this.getWebXmlPath()).getDocumentElement();
+			result = (XmlUtils.findFirstElement("/web-app/filter[filter-name='" + METRICS_FILTER_NAME + "']", root)!=null);
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This command will revert the command "nwcloud enable-metrics" by removing exactly the changes made by it.
+	 * The login configuration is only removed if no other security constraint is left in "web.xml".
+	 */
+	public void nwcloudDisableMetrics() {
+
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		Element root = document.getDocumentElement();
+
+		this.removeWebXmlFilter(root, METRICS_FILTER_NAME);
+		this.removeMetricsConstraint(root);
+		if (XmlUtils.findFirstElement("/web-app/security-constraint", root)==null) {
+			this.removeElements(root, "/web-app/login-config");
+		}
+		this.writeXmlFile(fileWebXml, document, "Removed request metrics filter and metrics endpoint");
+
+		this.setPersistenceUnitProperty(ECLIPSELINK_PROFILER, null, "Removed EclipseLink query metrics profiler");
+
+		this.deleteProjectClass("NWCloudQueryProfiler", "Delete EclipseLink query timing profiler");
+		this.deleteProjectClass("NWCloudMetricsFilter", "Delete request timing filter");
+		this.deleteProjectClass("NWCloudMetrics", "Delete in-memory latency histograms");
+
+	}
+
+	/**
+	 * Remove the security constraint of the metrics endpoint from "web.xml", and its security role if no
+	 * other security constraint requires it.
+	 * 
+	 * @param root Element "web-app" of "web.xml"
+	 */
+	private void removeMetricsConstraint(Element root) {
+
+		String constraintXPath = "/web-app/security-constraint[web-resource-collection/web-resource-name='" + METRICS_RESOURCE_NAME + "']";
+		Element roleName = XmlUtils.findFirstElement(constraintXPath + "/auth-constraint/role-name", root);
+		this.removeElements(root, constraintXPath);
+		if (roleName!=null) {
+			String role = roleName.getTextContent().trim();
+			if (XmlUtils.findFirstElement("/web-app/security-constraint/auth-constraint[role-name='" + role + "']", root)==null) {
+				this.removeElements(root, "/web-app/security-role[role-name='" + role + "']");
+			}
+		}
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enable-asset-pipeline
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Cache period (one year) of the fingerprinted bundles. Their names change whenever their content
+	 * changes, so clients may cache them "forever".
+	 */
+	private static final String ASSETS_CACHE_PERIOD = "31556926";
+
+	/**
+	 * Name of the bundle of the Spring JavaScript files loaded by "load-scripts.tagx"
+	 */
+	private static final String ASSETS_SCRIPT_GROUP = "application";
+
+	/**
+	 * This returns true if the command "nwcloud enable-asset-pipeline" of our addon should be available to the user.
+	 * We check if the project has the tag "load-scripts.tagx" of the Roo MVC scaffold (which loads the scripts and
+	 * stylesheets of all views) and if the reverse command "nwcloud disable-asset-pipeline" is unavailable.
+	 * 
+	 * @return True if command can be used (Roo MVC project without asset pipeline), false otherwise
+	 */
+	public boolean nwcloudEnableAssetPipelineIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getLoadScriptsTagPath())) {
+			result = !nwcloudDisableAssetPipelineIsAvailable();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This is the command "nwcloud enable-asset-pipeline". It will do four things:
+	 * 1.) Add the wro4j-maven-plugin to the build plugins in "pom.xml" (see "configuration.xml"). While packaging, it
+	 *     bundles and minifies the scripts and stylesheets defined in "WEB-INF/wro.xml", writes the bundles with a
+	 *     hash of their content in their names to "assets" in the WAR, and the mapping of original to hashed names
+	 *     to "WEB-INF/nwcloud-assets.properties". "wro.xml" defines one bundle for each theme stylesheet found in
+	 *     "src/main/webapp/styles" and one bundle "application.js" of the Spring JavaScript files of the scaffold.
+	 * 2.) Generate the class "NWCloudAssetManifest" in the project and register it as listener in "web.xml".
+	 *     It provides the mapping as application attribute "nwcloudAssets" to the views.
+	 * 3.) Change the tag "WEB-INF/tags/util/load-scripts.tagx" (a backup is made) to load the bundles instead of
+	 *     the original files if they exist. Without packaging (e.g. "mvn tomcat:run") the original files are used.
+	 * 4.) Serve the bundles under "/resources/assets/**" with a cache period of one year ("mvc:resources" in
+	 *     "webmvc-config.xml").
+	 */
+	public void nwcloudEnableAssetPipeline() {
+
+		// 1. Add wro4j-maven-plugin to "pom.xml" and create its configuration
+		Element configurationXml = XmlUtils.getConfiguration(getClass());
+		if (configurationXml!=null) {
+			this.updateBuildPlugins(configurationXml, "nwcloudassets");
+		} else {
+			this.log.warning("NWCloud-AddOn: Getting 'src/main/resources/[...]/configuration.xml' from addon returned null.");
+		}
+		String webInf = this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF");
+		this.writeTextFile(this.getAssetGroupsPath(), null, this.createAssetGroups(), "Definition of asset bundles");
+		this.copyFileFromAddonToProject(webInf, "wro.properties", "Config file for asset bundling and fingerprinting");
+
+		// 2. Generate the listener providing the names of the bundles, and register it in "web.xml"
+		String listenerClass = this.copyTemplateToProject("NWCloudAssetManifest", "Mapping of assets to fingerprinted bundles");
+		String fileWebXml = this.getWebXmlPath();
+		if (fileManager.exists(fileWebXml)) {
+			Document document = this.readXmlFile(fileWebXml);
+			this.addWebXmlListener(document.getDocumentElement(), listenerClass);
+			this.writeXmlFile(fileWebXml, document, "Added listener for fingerprinted asset bundles");
+		} else {
+			this.log.warning("NWCloud-AddOn: No 'web.xml' found, please register the listener '" + listenerClass + "' yourself.");
+		}
+
+		// 3. Load the bundles in "load-scripts.tagx"
+		this.rewriteLoadScriptsTag();
+
+		// 4. Serve the bundles with long-lived cache headers
+		String fileWebMvcConfig = this.getWebMvcConfigPath();
+		if (fileManager.exists(fileWebMvcConfig)) {
+			Document document = this.readXmlFile(fileWebMvcConfig);
+			Element root = document.getDocumentElement();
+			Element resources = XmlUtils.findFirstElement("/beans/resources[@mapping='/resources/**']", root);
+			if ((resources!=null) && (XmlUtils.findFirstElement("/beans/resources[@mapping='/resources/assets/**']", root)==null)) {
+				// Spring uses the first matching "mvc:resources", so the more specific one is added in front
+				Element assets = (Element) resources.cloneNode(false);
+				assets.setAttribute("mapping", "/resources/assets/**");
+				assets.setAttribute("location", "/assets/");
+				assets.setAttribute("cache-period", ASSETS_CACHE_PERIOD);
+				root.insertBefore(assets, resources);
+				this.writeXmlFile(fileWebMvcConfig, document, "Added cache headers for fingerprinted asset bundles");
+			} else if (resources==null) {
+				this.log.warning("NWCloud-AddOn: No 'mvc:resources' element for '/resources/**' found in '" + fileWebMvcConfig + "'.");
+			}
+		}
+
+	}
+
+	/**
+	 * @return String of full qualified name of "src/main/webapp/WEB-INF/tags/util/load-scripts.tagx"
+	 */
+	private String getLoadScriptsTagPath() {
+
+		return this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF" + File.separatorChar + "tags" + File.separatorChar + "util" + File.separatorChar + "load-scripts.tagx");
+
+	}
+
+	/**
+	 * @return String of full qualified name of the wro4j group definition "src/main/webapp/WEB-INF/wro.xml"
+	 */
+	private String getAssetGroupsPath() {
+
+		return this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF" + File.separatorChar + "wro.xml");
+
+	}
+
+	/**
+	 * Create the wro4j group definition ("wro.xml"). Each stylesheet in "src/main/webapp/styles" becomes a group
+	 * of its own (as only one theme is used per page), and the Spring JavaScript files of the scaffold (loaded
+	 * from the "spring-js-resources" dependency) are bundled into the group "application". The loader "dojo.js"
+	 * is left out, because Dojo loads its modules relative to it.
+	 * 
+	 * @return String of content of "wro.xml"
+	 */
+	private String createAssetGroups() {
+
+		StringBuilder groups = new StringBuilder();
+		groups.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+		groups.append("<!-- Generated by the Roo command \"nwcloud enable-asset-pipeline\": bundles of scripts and stylesheets -->\n");
+		groups.append("<groups xmlns=\"http://www.isdc.ro/wro\">\n");
+		groups.append("    <group name=\"" + ASSETS_SCRIPT_GROUP + "\">\n");
+		groups.append("        <js>classpath:META-INF/web-resources/spring/Spring.js</js>\n");
+		groups.append("        <js>classpath:META-INF/web-resources/spring/Spring-Dojo.js</js>\n");
+		groups.append("    </group>\n");
+
+		File[] styles = new File(this.getPathResolved(Path.SRC_MAIN_WEBAPP, "styles")).listFiles();
+		if (styles!=null) {
+			Set<String> styleNames = new TreeSet<String>();
+			for (File style : styles) {
+				if (style.isFile() && style.getName().matches("[\\w-]+\\.css")) {
+					styleNames.add(style.getName().substring(0, style.getName().length() - ".css".length()));
+				}
+			}
+			for (String styleName : styleNames) {
+				groups.append("    <group name=\"" + styleName + "\">\n");
+				groups.append("        <css>/styles/" + styleName + ".css</css>\n");
+				groups.append("    </group>\n");
+			}
+		}
+
+		groups.append("</groups>\n");
+		return groups.toString();
+
+	}
+
+	/**
+	 * Change "load-scripts.tagx" to load the fingerprinted bundles (looked up in the application attribute
+	 * "nwcloudAssets") instead of the original theme stylesheet and Spring JavaScript files, if they exist.
+	 * A backup of the tag is made, which is restored by "nwcloud disable-asset-pipeline".
+	 */
+	private void rewriteLoadScriptsTag() {
+
+		String fileTag = this.getLoadScriptsTagPath();
+		Document document = this.readXmlFile(fileTag);
+		Element root = document.getDocumentElement();
+
+		Element theme = XmlUtils.findFirstElement("/root/theme[@var='roo_css']", root);
+		Element springDojoUrl = XmlUtils.findFirstElement("/root/url[@var='spring_dojo_url']", root);
+		Element springDojoScript = XmlUtils.findFirstElement("/root/script[@src='${spring_dojo_url}']", root);
+		if ((theme==null) && (springDojoUrl==null)) {
+			this.log.warning("NWCloud-AddOn: '" + fileTag + "' does not load the theme stylesheet or the Spring JavaScript files as generated by Roo, so it is unchanged.");
+			return;
+		}
+
+		this.backup(fileTag, null);
+		if (!root.hasAttribute("xmlns:c")) {
+			root.setAttribute("xmlns:c", "http://java.sun.com/jsp/jstl/core");
+		}
+
+		// Use the bundle of the current theme stylesheet (e.g. "resources/styles/standard.css")
+		if (theme!=null) {
+			Element ifBundled = document.createElement("c:if");
+			ifBundled.setAttribute("test", "${not empty nwcloudAssets[roo_css]}");
+			Element setCss = document.createElement("c:set");
+			setCss.setAttribute("var", "roo_css");
+			setCss.setAttribute("value", "${nwcloudAssets[roo_css]}");
+			ifBundled.appendChild(setCss);
+			root.insertBefore(ifBundled, theme.getNextSibling());
+		}
+
+		// Load "Spring.js" and "Spring-Dojo.js" as one bundle
+		if (springDojoUrl!=null) {
+			Element setScript = document.createElement("c:set");
+			setScript.setAttribute("var", "nwcloud_js");
+			setScript.setAttribute("value", "${nwcloudAssets['resources/scripts/" + ASSETS_SCRIPT_GROUP + ".js']}");
+			Element ifBundled = document.createElement("c:if");
+			ifBundled.setAttribute("test", "${not empty nwcloud_js}");
+			Element bundleUrl = document.createElement(springDojoUrl.getNodeName());
+			bundleUrl.setAttribute("value", "/${nwcloud_js}");
+			bundleUrl.setAttribute("var", "spring_url");
+			ifBundled.appendChild(bundleUrl);
+			root.insertBefore(setScript, springDojoUrl.getNextSibling());
+			root.insertBefore(ifBundled, setScript.getNextSibling());
+			if (springDojoScript!=null) {
+				Element ifNotBundled = document.createElement("c:if");
+				ifNotBundled.setAttribute("test", "${empty nwcloud_js}");
+				root.replaceChild(ifNotBundled, springDojoScript);
+				ifNotBundled.appendChild(springDojoScript);
+			}
+		}
+
+		this.writeXmlFile(fileTag, document, "Load fingerprinted asset bundles");
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud disable-asset-pipeline
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * This returns true if the command "nwcloud disable-asset-pipeline" of our addon should be available
+	 * to the user. We check if the bundle definition "wro.xml" created by "nwcloud enable-asset-pipeline" exists.
+	 * 
+	 * @return True if command can be used (asset pipeline enabled), false otherwise
+	 */
+	public boolean nwcloudDisableAssetPipelineIsAvailable() {
+
+		boolean result = false;
+
+		if (this.getPOM()!=null) {
+			result = fileManager.exists(this.getAssetGroupsPath());
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This command will revert the command "nwcloud enable-asset-pipeline". The build plugin, the listener and
+	 * the "mvc:resources" element of the bundles are removed, and the backup of "load-scripts.tagx" is restored.
+	 */
+	public void nwcloudDisableAssetPipeline() {
+
+		Element configurationXml = XmlUtils.getConfiguration(getClass());
+		if (configurationXml!=null) {
+			for (Element xmlPlugin : XmlUtils.findElements("/configuration/nwcloudassets/build/plugins/plugin", configurationXml)) {
+				this.removeBuildPlugin(new Plugin(xmlPlugin));
+			}
+		}
+		fileManager.delete(this.getAssetGroupsPath(), "Delete definition of asset bundles");
+		String fileWroProperties = this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF" + File.separatorChar + "wro.properties");
+		if (fileManager.exists(fileWroProperties)) {
+			fileManager.delete(fileWroProperties, "Delete config file for asset bundling and fingerprinting");
+		}
+
+		String fileWebXml = this.getWebXmlPath();
+		if (fileManager.exists(fileWebXml)) {
+			Document document = this.readXmlFile(fileWebXml);
+			this.removeWebXmlListener(document.getDocumentElement(), this.getProjectSupportPackage() + ".NWCloudAssetManifest");
+			this.writeXmlFile(fileWebXml, document, "Removed listener for fingerprinted asset bundles");
+		}
+		this.deleteProjectClass("NWCloudAssetManifest", "Delete mapping of assets to fingerprinted bundles");
+
+		if (fileManager.exists(this.getLoadScriptsTagPath() + BAK_SUFFIX)) {
+			this.backupRevert(this.getLoadScriptsTagPath(), null);
+		}
+
+		String fileWebMvcConfig = this.getWebMvcConfigPath();
+		if (fileManager.exists(fileWebMvcConfig)) {
+			Document document = this.readXmlFile(fileWebMvcConfig);
+			if (this.removeElements(document.getDocumentElement(), "/beans/resources[@mapping='/resources/assets/**']")) {
+				this.writeXmlFile(fileWebMvcConfig, document, "Removed cache headers for fingerprinted asset bundles");
+			}
+		}
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enable-stateless
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Source code patterns indicating that a class creates or uses HTTP sessions, with a description
+	 * for the report of "nwcloud enable-stateless"
+	 */
+	private static final Map<String, String> SESSION_USAGES = new LinkedHashMap<String, String>();
+	static {
+		SESSION_USAGES.put("@SessionAttributes", "stores model attributes in the session (@SessionAttributes)");
+		SESSION_USAGES.put("HttpSession", "uses HttpSession");
+		SESSION_USAGES.put("getSession(", "calls getSession()");
+		SESSION_USAGES.put("RedirectAttributes", "uses flash attributes, which are stored in the session");
+		SESSION_USAGES.put("@Scope(\"session\")", "defines a session scoped bean");
+	}
+
+	/**
+	 * Page directive attribute added to the views by "nwcloud enable-stateless"
+	 */
+	private static final String JSP_NO_SESSION = "session=\"false\" ";
+
+	/**
+	 * Text in views indicating that they read the session while rendering. With "session=false", expressions
+	 * without scope (e.g. "${SPRING_SECURITY_LAST_EXCEPTION.message}" in the "login.jspx" of Roo) don't find
+	 * session attributes anymore, so these views are left unchanged:
+	 * - "session" (e.g. "sessionScope", "pageContext.session" or an explicit "session" page attribute)
+	 * - "SPRING_SECURITY_" (attributes stored in the session by Spring Security, e.g. the last login failure)
+	 * - "scopedTarget." (session scoped beans exposed to the view)
+	 */
+	private static final List<String> VIEW_SESSION_USAGES = Arrays.asList("session", "SPRING_SECURITY_", "scopedTarget.");
+
+	/**
+	 * This returns true if the command "nwcloud enable-stateless" of our addon should be available to the user.
+	 * We check if the project has a "web.xml". The command can be used again (e.g. after new views have been
+	 * scaffolded), as it only changes what isn't changed yet.
+	 * 
+	 * @return True if command can be used (web project), false otherwise
+	 */
+	public boolean nwcloudEnableStatelessIsAvailable() {
+
+		return (this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath());
+
+	}
+
+	/**
+	 * This is the command "nwcloud enable-stateless". It prepares the application to be served by more than one
+	 * server process ("maximum-processes" in "nwcloud.properties"), where sessions are bound to one process:
+	 * 1.) Mark the application as distributable and set the session timeout in "web.xml".
+	 * 2.) Generate the class "NWCloudSessionAttributeChecker" in the project and register it as listener in "web.xml".
+	 *     It logs session attributes that can't be serialized (or are large), which prevent session replication.
+	 * 3.) Replace session based locale and theme resolvers in "webmvc-config.xml" by cookie based ones.
+	 * 4.) Add the page directive attribute session="false" to all JSP documents in "WEB-INF" that don't use the
+	 *     session. Otherwise each rendered view creates a session (as JSPs do by default).
+	 * 5.) Report the classes in "src/main/java" (including AspectJ ITDs) and the views that still create or use sessions.
+	 * 
+	 * @param sessionTimeout Minutes of inactivity after which a session expires
+	 */
+	public void nwcloudEnableStateless(int sessionTimeout) {
+
+		if (sessionTimeout<=0) {
+			this.log.warning("NWCloud-AddOn: The session timeout has to be at least one minute, as sessions that never expire fill up the memory of the server processes.");
+			return;
+		}
+
+		// 1. + 2. Change "web.xml"
+		String listenerClass = this.copyTemplateToProject("NWCloudSessionAttributeChecker", "Check of session attribute serializability");
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		Element root = document.getDocumentElement();
+		if (XmlUtils.findFirstElement("/web-app/distributable", root)==null) {
+			this.insertWebXmlElement(root, this.createChildElement(document, null, "distributable", null));
+		}
+		Element sessionConfig = XmlUtils.findFirstElement("/web-app/session-config", root);
+		if (sessionConfig==null) {
+			sessionConfig = this.createChildElement(document, null, "session-config", null);
+			this.insertWebXmlElement(root, sessionConfig);
+		}
+		Element timeout = XmlUtils.findFirstElement("session-timeout", sessionConfig);
+		if (timeout==null) {
+			timeout = this.createChildElement(document, null, "session-timeout", null);
+			sessionConfig.insertBefore(timeout, sessionConfig.getFirstChild());
+		}
+		timeout.setTextContent(String.valueOf(sessionTimeout));
+		this.addWebXmlListener(root, listenerClass);
+		this.writeXmlFile(fileWebXml, document, "Marked application as distributable");
+
+		// 3. Use cookie based locale and theme resolvers
+		String fileWebMvcConfig = this.getWebMvcConfigPath();
+		if (fileManager.exists(fileWebMvcConfig)) {
+			Document webMvcConfig = this.readXmlFile(fileWebMvcConfig);
+			boolean changed = false;
+			for (Element bean : XmlUtils.findElements("/beans/bean[@class='org.springframework.web.servlet.i18n.SessionLocaleResolver']", webMvcConfig.getDocumentElement())) {
+				bean.setAttribute("class", "org.springframework.web.servlet.i18n.CookieLocaleResolver");
+				changed = true;
+			}
+			for (Element bean : XmlUtils.findElements("/beans/bean[@class='org.springframework.web.servlet.theme.SessionThemeResolver']", webMvcConfig.getDocumentElement())) {
+				bean.setAttribute("class", "org.springframework.web.servlet.theme.CookieThemeResolver");
+				changed = true;
+			}
+			if (changed) {
+				this.writeXmlFile(fileWebMvcConfig, webMvcConfig, "Replaced session based locale and theme resolvers by cookie based ones");
+			}
+		}
+
+		// 4. Don't create sessions when rendering views
+		List<String> viewsUsingSession = new ArrayList<String>();
+		int changedViews = 0;
+		for (File view : this.findFiles(new File(this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF")), ".jspx", ".tagx")) {
+			String content = this.readTextFile(view.getPath());
+			if (isViewUsingSession(content)) {
+				if (!content.contains("<jsp:directive.page " + JSP_NO_SESSION)) {
+					viewsUsingSession.add(view.getName());
+				}
+			} else if (view.getName().endsWith(".jspx") && content.contains("<jsp:directive.page ")) {
+				this.writeTextFile(view.getPath(), content, content.replace("<jsp:directive.page ", "<jsp:directive.page " + JSP_NO_SESSION), "Render view without creating a session");
+				changedViews++;
+			}
+		}
+		this.log.info("NWCloud-AddOn: " + changedViews + " views changed to render without creating a session.");
+
+		// 5. Report what still creates or uses sessions
+		boolean found = !viewsUsingSession.isEmpty();
+		for (File source : this.findFiles(new File(this.getPathResolved(Path.SRC_MAIN_JAVA, "")), ".java", ".aj")) {
+			String content = this.readTextFile(source.getPath());
+			StringBuilder usages = new StringBuilder();
+			for (Map.Entry<String, String> usage : SESSION_USAGES.entrySet()) {
+				if (content.contains(usage.getKey())) {
+					usages.append(usages.length()>0 ? ", " : "").append(usage.getValue());
+				}
+			}
+			if ((usages.length()>0) && !source.getName().equals("NWCloudSessionAttributeChecker.java")) {
+				this.log.warning("NWCloud-AddOn: " + source.getName() + " " + usages);
+				found = true;
+			}
+		}
+		for (String view : viewsUsingSession) {
+			this.log.warning("NWCloud-AddOn: " + view + " uses the session (e.g. sessionScope) and still creates one when rendered");
+		}
+		if (found) {
+			this.log.warning("NWCloud-AddOn: Sessions are bound to one server process. Keep what is stored in them small and serializable, or move it to cookies, request parameters or the database.");
+		} else {
+			this.log.info("NWCloud-AddOn: No classes or views using sessions found.");
+		}
+
+	}
+
+	/**
+	 * @param content String of content of a view (".jspx" or ".tagx")
+	 * @return True if the view reads the session while rendering (see VIEW_SESSION_USAGES), false otherwise
+	 */
+	static boolean isViewUsingSession(String content) {
+
+		for (String usage : VIEW_SESSION_USAGES) {
+			if (content.contains(usage)) {
+				return true;
+			}
+		}
+		return false;
+
+	}
+
+	/**
+	 * Find all files in the passed directory and its subdirectories having one of the passed suffixes.
+	 * 
+	 * @param directory File of directory to search
+	 * @param suffixes Suffixes of the file names to find (e.g. ".java")
+	 * @return List of files found (sorted by path)
+	 */
+	private List<File> findFiles(File directory, String... suffixes) {
+
+		List<File> result = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if (files!=null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.isDirectory()) {
+					result.addAll(this.findFiles(file, suffixes));
+				} else {
+					for (String suffix : suffixes) {
+						if (file.getName().endsWith(suffix)) {
+							result.add(file);
+							break;
+						}
+					}
+				}
+			}
+		}
+		return result;
+
+	}
+
+	/**
+	 * Read the text file "file" of the project.
+	 * 
+	 * @param file String of full qualified name of the file
+	 * @return String of content of the file (UTF-8)
+	 */
+	String readTextFile(String file) {
+
+		try {
+			return new String(this.readFile(file), "UTF-8");
+		} catch (IOException e) {
+			throw new IllegalStateException("NWCloud-AddOn: Could not read '" + file + "'.", e);
+		}
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud disable-stateless
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * This returns true if the command "nwcloud disable-stateless" of our addon should be available to the
+	 * user. We check if the listener added by "nwcloud enable-stateless" is registered in "web.xml".
+	 * 
+	 * @return True if command can be used (application marked as stateless), false otherwise
+	 */
+	public boolean nwcloudDisableStatelessIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath())) {
+			Element root = this.readXmlFile(this.getWebXmlPath()).getDocumentElement();
+			result = (XmlUtils.findFirstElement("/web-app/listener[listener-class='" + this.getProjectSupportPackage() + ".NWCloudSessionAttributeChecker']", root)!=null);
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This command will revert the command "nwcloud enable-stateless". The application is no longer marked as
+	 * distributable, the listener is removed, and the views create sessions again. The session timeout and the
+	 * cookie based resolvers are kept, as they work for non distributable applications as well.
+	 */
+	public void nwcloudDisableStateless() {
+
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		this.removeElements(document.getDocumentElement(), "/web-app/distributable");
+		this.removeWebXmlListener(document.getDocumentElement(), this.getProjectSupportPackage() + ".NWCloudSessionAttributeChecker");
+		this.writeXmlFile(fileWebXml, document, "Removed distributable marker");
+		this.deleteProjectClass("NWCloudSessionAttributeChecker", "Delete check of session attribute serializability");
+
+		for (File view : this.findFiles(new File(this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF")), ".jspx")) {
+			String content = this.readTextFile(view.getPath());
+			if (content.contains("<jsp:directive.page " + JSP_NO_SESSION)) {
+				this.writeTextFile(view.getPath(), content, content.replace("<jsp:directive.page " + JSP_NO_SESSION, "<jsp:directive.page "), "Render view with session");
+			}
+		}
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enable-warmup
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Name of the warm-up servlet added to "web.xml" by "nwcloud enable-warmup"
+	 */
+	private static final String WARMUP_SERVLET_NAME = "nwcloudWarmUp";
+
+	/**
+	 * Roo annotations of JPA entities and scaffolded controllers, which the warm-up configuration is created from
+	 */
+	private static final JavaType ROO_JPA_ACTIVE_RECORD = new JavaType("org.springframework.roo.addon.jpa.activerecord.RooJpaActiveRecord");
+	private static final JavaType ROO_JPA_ENTITY = new JavaType("org.springframework.roo.addon.jpa.entity.RooJpaEntity");
+	private static final JavaType ROO_WEB_SCAFFOLD = new JavaType("org.springframework.roo.addon.web.mvc.controller.scaffold.RooWebScaffold");
+	private static final JavaType ROO_WEB_JSON = new JavaType("org.springframework.roo.addon.web.mvc.controller.json.RooWebJson");
+
+	/**
+	 * This returns true if the command "nwcloud enable-warmup" of our addon should be available to the user.
+	 * We check if the project has a "web.xml" and if the reverse command "nwcloud disable-warmup" is unavailable.
+	 * 
+	 * @return True if command can be used (web project without warm-up), false otherwise
+	 */
+	public boolean nwcloudEnableWarmupIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath())) {
+			result = !nwcloudDisableWarmupIsAvailable();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This is the command "nwcloud enable-warmup". It will do two things:
+	 * 1.) Generate the class "NWCloudWarmUp" in the project and register it in "web.xml" as servlet that is loaded on
+	 *     startup after the Spring DispatcherServlet. When it is initialized, it replays the configured requests through
+	 *     the DispatcherServlet and runs the configured JPQL queries, and logs the duration and the latency of the first
+	 *     and the last execution of each. The container only starts to accept requests after all servlets loaded on
+	 *     startup are initialized, so no user request hits a cold server process.
+	 * 2.) Create the configuration "src/main/webapp/WEB-INF/nwcloud-warmup.properties" (if it doesn't exist yet),
+	 *     with a query for each JPA entity and a request for the list view (and JSON list) of each scaffolded controller.
+	 * 
+	 * @param iterations Count of times each request and query is executed
+	 */
+	public void nwcloudEnableWarmup(int iterations) {
+
+		if (iterations<1) {
+			this.log.warning("NWCloud-AddOn: The count of iterations has to be at least 1.");
+			return;
+		}
+
+		// 1. Generate warm-up servlet and register it in "web.xml"
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		Element root = document.getDocumentElement();
+		String dispatcherServlet = this.getDispatcherServletName(root);
+		if (dispatcherServlet==null) {
+			this.log.warning("NWCloud-AddOn: No Spring DispatcherServlet found in 'web.xml', so requests can't be replayed while warming up.");
+		}
+		String servletClass = this.copyTemplateToProject("NWCloudWarmUp", "Warm-up of new server processes");
+
+		// Load the warm-up servlet after the dispatcher servlet
+		int loadOnStartup = 1;
+		for (Element element : XmlUtils.findElements("/web-app/servlet/load-on-startup", root)) {
+			try {
+				loadOnStartup = Math.max(loadOnStartup, Integer.parseInt(element.getTextContent().trim()) + 1);
+			} catch (NumberFormatException e) {
+				// Ignore
+			}
+		}
+		Element servlet = this.createChildElement(document, null, "servlet", null);
+		this.createChildElement(document, servlet, "servlet-name", WARMUP_SERVLET_NAME);
+		this.createChildElement(document, servlet, "servlet-class", servletClass);
+		if (dispatcherServlet!=null) {
+			Element initParam = this.createChildElement(document, servlet, "init-param", null);
+			this.createChildElement(document, initParam, "param-name", "dispatcherServlet");
+			this.createChildElement(document, initParam, "param-value", dispatcherServlet);
+		}
+		this.createChildElement(document, servlet, "load-on-startup", String.valueOf(loadOnStartup));
+		this.insertWebXmlElement(root, servlet);
+		this.writeXmlFile(fileWebXml, document, "Added warm-up of new server processes");
+
+		// 2. Create warm-up configuration
+		String fileConfiguration = this.getWarmupConfigurationPath();
+		if (fileManager.exists(fileConfiguration)) {
+			this.log.info("NWCloud-AddOn: Keeping existing warm-up configuration '" + fileConfiguration + "'.");
+		} else {
+			this.writeTextFile(fileConfiguration, null, this.createWarmupConfiguration(iterations), "Config file for warm-up of new server processes");
+		}
+
+	}
+
+	/**
+	 * @return String of full qualified name of "src/main/webapp/WEB-INF/nwcloud-warmup.properties"
+	 */
+	private String getWarmupConfigurationPath() {
+
+		return this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF" + File.separatorChar + "nwcloud-warmup.properties");
+
+	}
+
+	/**
+	 * Create the warm-up configuration from the Roo metadata of the project: a query reading the first entries
+	 * of each JPA entity, and requests of the first page of the list view of each scaffolded controller (and of
+	 * the JSON list, if the controller is a JSON controller).
+	 * 
+	 * @param iterations Count of times each request and query is executed
+	 * @return String of content of "nwcloud-warmup.properties"
+	 */
+	private String createWarmupConfiguration(int iterations) {
+
+		Set<String> entities = new TreeSet<String>();
+		for (JavaType entity : typeLocationService.findTypesWithAnnotation(ROO_JPA_ACTIVE_RECORD, ROO_JPA_ENTITY)) {
+			entities.add(entity.getSimpleTypeName());
+		}
+		Set<String> paths = new TreeSet<String>();
+		Set<String> jsonPaths = new TreeSet<String>();
+		for (JavaType controller : typeLocationService.findTypesWithAnnotation(ROO_WEB_SCAFFOLD)) {
+			ClassOrInterfaceTypeDetails details = typeLocationService.getTypeDetails(controller);
+			AnnotationMetadata scaffold = (details!=null) ? details.getAnnotation(ROO_WEB_SCAFFOLD) : null;
+			AnnotationAttributeValue<?> path = (scaffold!=null) ? scaffold.getAttribute(new JavaSymbolName("path")) : null;
+			if (path!=null) {
+				paths.add(String.valueOf(path.getValue()));
+				if (details.getAnnotation(ROO_WEB_JSON)!=null) {
+					jsonPaths.add(String.valueOf(path.getValue()));
+				}
+			}
+		}
+
+		StringBuilder configuration = new StringBuilder();
+		configuration.append("# =============================================================================\n");
+		configuration.append("# SAP HANA Cloud - Warm-up of new server processes\n");
+		configuration.append("# =============================================================================\n");
+		configuration.append("# Generated by the Roo command \"nwcloud enable-warmup\". Each request and each\n");
+		configuration.append("# query is executed \"iterations\" times when a server process starts, before it\n");
+		configuration.append("# serves its first request. Add the requests and queries that are typical for\n");
+		configuration.append("# the load of your application.\n\n");
+		configuration.append("iterations=" + iterations + "\n\n");
+		configuration.append("# JPQL queries (number of results limited to \"maxResults\")\n");
+		configuration.append("maxResults=10\n");
+		int i = 0;
+		for (String entity : entities) {
+			configuration.append("query." + (++i) + "=SELECT o FROM " + entity + " o\n");
+		}
+		configuration.append("\n# GET requests replayed through the DispatcherServlet: path (and query string),\n");
+		configuration.append("# optionally followed by the Accept header (defaults to text/html)\n");
+		i = 0;
+		for (String path : paths) {
+			configuration.append("request." + (++i) + "=/" + path + "?page=1&size=10\n");
+			if (jsonPaths.contains(path)) {
+				configuration.append("request." + (++i) + "=/" + path + " application/json\n");
+			}
+		}
+		return configuration.toString();
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud disable-warmup
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * This returns true if the command "nwcloud disable-warmup" of our addon should be available to
+	 * the user. We check if the warm-up servlet added by "nwcloud enable-warmup" is registered in "web.xml".
+	 * 
+	 * @return True if command can be used (warm-up servlet registered), false otherwise
+	 */
+	public boolean nwcloudDisableWarmupIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath())) {
+			Element root = this.readXmlFile(this.getWebXmlPath()).getDocumentElement();
+			result = (XmlUtils.findFirstElement("/web-app/servlet[servlet-name='" + WARMUP_SERVLET_NAME + "']", root)!=null);
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This command will revert the command "nwcloud enable-warmup". The warm-up configuration is kept,
+	 * so it is used again if the warm-up is enabled later.
+	 */
+	public void nwcloudDisableWarmup() {
+
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		this.removeElements(document.getDocumentElement(), "/web-app/servlet[servlet-name='" + WARMUP_SERVLET_NAME + "']");
+		this.writeXmlFile(fileWebXml, document, "Removed warm-up of new server processes");
+		this.deleteProjectClass("NWCloudWarmUp", "Delete warm-up of new server processes");
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enable-async-web
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Id of the task executor bean added to "webmvc-config.xml" by "nwcloud enable-async-web"
+	 */
+	private static final String ASYNC_EXECUTOR_ID = "nwcloudAsyncExecutor";
+
+	/**
+	 * Spring version used if the project uses a version without asynchronous request processing (before 3.2)
+	 */
+	private static final String ASYNC_SPRING_VERSION = "3.2.18.RELEASE";
+
+	/**
+	 * Annotations of JPA relations, which may be loaded lazily
+	 */
+	private static final List<JavaType> JPA_RELATIONS = Arrays.asList(new JavaType("javax.persistence.OneToOne"), new JavaType("javax.persistence.ManyToOne"),
+		new JavaType("javax.persistence.OneToMany"), new JavaType("javax.persistence.ManyToMany"), new JavaType("javax.persistence.ElementCollection"));
+
+	/**
+	 * Wrapper types of primitive return types, which have to be used as type argument of Callable
+	 */
+	private static final Map<String, String> PRIMITIVE_WRAPPERS = new LinkedHashMap<String, String>();
+	static {
+		PRIMITIVE_WRAPPERS.put("boolean", "Boolean");
+		PRIMITIVE_WRAPPERS.put("byte", "Byte");
+		PRIMITIVE_WRAPPERS.put("char", "Character");
+		PRIMITIVE_WRAPPERS.put("short", "Short");
+		PRIMITIVE_WRAPPERS.put("int", "Integer");
+		PRIMITIVE_WRAPPERS.put("long", "Long");
+		PRIMITIVE_WRAPPERS.put("float", "Float");
+		PRIMITIVE_WRAPPERS.put("double", "Double");
+	}
+
+	/**
+	 * This returns true if the command "nwcloud enable-async-web" of our addon should be available to the user.
+	 * We check if the project has a "web.xml" and a Spring MVC configuration, and if the reverse command
+	 * "nwcloud disable-async-web" is unavailable.
+	 * 
+	 * @return True if command can be used (Spring MVC project without asynchronous request processing), false otherwise
+	 */
+	public boolean nwcloudEnableAsyncWebIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath()) && fileManager.exists(this.getWebMvcConfigPath())) {
+			result = !nwcloudDisableAsyncWebIsAvailable();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This is the command "nwcloud enable-async-web". It will do four things:
+	 * 1.) Upgrade "web.xml" to Servlet 3.0 (with "metadata-complete" if requested, so the container doesn't scan
+	 *     the classes for annotations on startup), and add "async-supported" to the dispatcher servlet and all
+	 *     filters. The filters are mapped to the ASYNC dispatcher as well, so they also apply when the result is
+	 *     rendered.
+	 * 2.) Upgrade Spring to 3.2 in "pom.xml", if an older version is used and the upgrade is requested. Without
+	 *     the upgrade, nothing is changed for projects using an older version.
+	 * 3.) Add a bounded task executor to "webmvc-config.xml" and use it for asynchronous request processing.
+	 * 4.) Convert the passed controller methods to return a Callable, which runs the original method body
+	 *     in the task executor while the container thread is released.
+	 * 5.) Generate the benchmark "NWCloudAsyncBenchmark" in "src/test/java", which sends concurrent requests to
+	 *     a local server and reports the peak count of its threads.
+	 * 
+	 * @param poolSize Maximum count of threads processing requests asynchronously
+	 * @param queueCapacity Maximum count of requests waiting for a thread (further requests are rejected)
+	 * @param timeout Milliseconds after which asynchronous requests time out
+	 * @param methods Comma separated list of controller methods to convert (e.g. "PersonController.list"), may be null
+	 * @param metadataComplete True to mark "web.xml" as "metadata-complete" when it is upgraded to Servlet 3.0
+	 * @param upgradeSpring True to upgrade Spring to 3.2 if an older version is used
+	 */
+	public void nwcloudEnableAsyncWeb(int poolSize, int queueCapacity, int timeout, String methods, boolean metadataComplete, boolean upgradeSpring) {
+
+		if ((poolSize<1) || (queueCapacity<0) || (timeout<1)) {
+			this.log.warning("NWCloud-AddOn: The pool size and the timeout have to be at least 1, the queue capacity at least 0.");
+			return;
+		}
+
+		// Asynchronous request processing needs Spring 3.2, so check the version before changing anything
+		String filePom = this.getPOM().getPath();
+		Document pom = this.readXmlFile(filePom);
+		Element springVersion = XmlUtils.findFirstElement("/project/properties/spring.version", pom.getDocumentElement());
+		boolean outdatedSpring = this.isOutdatedSpringVersion(springVersion);
+		if (outdatedSpring && !upgradeSpring) {
+			this.log.warning("NWCloud-AddOn: Asynchronous request processing needs Spring 3.2 or later, but the project uses Spring " + springVersion.getTextContent().trim() + ". Nothing was changed; run the command with '--upgradeSpring true' to upgrade the whole application to Spring " + ASYNC_SPRING_VERSION + ".");
+			return;
+		}
+
+		// 1. Upgrade "web.xml"
+		String fileWebXml = this.getWebXmlPath();
+		Document document = this.readXmlFile(fileWebXml);
+		Element root = document.getDocumentElement();
+		if (!"http://java.sun.com/xml/ns/javaee".equals(root.getAttribute("xmlns"))) {
+			this.log.warning("NWCloud-AddOn: 'web.xml' doesn't use the namespace of Servlet 2.5 or later, please upgrade it to Servlet 3.0 yourself.");
+			return;
+		}
+		if (root.getAttribute("version").compareTo("3.0")<0) {
+			root.setAttribute("version", "3.0");
+			root.setAttribute("xsi:schemaLocation", "http://java.sun.com/xml/ns/javaee http://java.sun.com/xml/ns/javaee/web-app_3_0.xsd");
+			if (metadataComplete) {
+				root.setAttribute("metadata-complete", "true");
+				this.log.warning("NWCloud-AddOn: 'web.xml' is marked as 'metadata-complete', so the server ignores annotations (e.g. @WebServlet) and 'web-fragment.xml' files of the libraries; declare their servlets, filters and listeners in 'web.xml'.");
+			}
+		}
+		String dispatcherServlet = this.getDispatcherServletName(root);
+		if (dispatcherServlet!=null) {
+			Element servlet = XmlUtils.findFirstElement("/web-app/servlet[servlet-name='" + dispatcherServlet + "']", root);
+			this.addAsyncSupported(servlet, "run-as", "security-role-ref", "multipart-config");
+		} else {
+			this.log.warning("NWCloud-AddOn: No Spring DispatcherServlet found in 'web.xml'.");
+		}
+		for (Element filter : XmlUtils.findElements("/web-app/filter", root)) {
+			this.addAsyncSupported(filter, "init-param");
+		}
+		for (Element filterMapping : XmlUtils.findElements("/web-app/filter-mapping", root)) {
+			if (XmlUtils.findFirstElement("dispatcher", filterMapping)==null) {
+				this.createChildElement(document, filterMapping, "dispatcher", "REQUEST");
+			}
+			if (XmlUtils.findFirstElement("dispatcher[.='ASYNC']", filterMapping)==null) {
+				this.createChildElement(document, filterMapping, "dispatcher", "ASYNC");
+			}
+		}
+		this.writeXmlFile(fileWebXml, document, "Enabled asynchronous request processing");
+		if (XmlUtils.findFirstElement("/web-app/filter[filter-name='" + GZIP_FILTER_NAME + "']", root)!=null) {
+			// Update the gzip filter of "nwcloud enable-web-cache" to a version supporting asynchronous requests
+			this.copyTemplateToProject("NWCloudGzipFilter", "Gzip compression filter supporting asynchronous requests");
+		}
+		if (XmlUtils.findFirstElement("/web-app/filter[filter-name='" + METRICS_FILTER_NAME + "']", root)!=null) {
+			// Update the metrics filter of "nwcloud enable-metrics" to record asynchronous requests once
+			this.copyTemplateToProject("NWCloudMetricsFilter", "Request timing filter supporting asynchronous requests");
+		}
+
+		// 2. Upgrade Spring
+		if (outdatedSpring) {
+			String version = springVersion.getTextContent().trim();
+			springVersion.setTextContent(ASYNC_SPRING_VERSION);
+			this.writeXmlFile(filePom, pom, "Upgraded Spring from " + version + " to " + ASYNC_SPRING_VERSION);
+			this.log.warning("NWCloud-AddOn: Spring was upgraded from " + version + " to " + ASYNC_SPRING_VERSION + " for the whole application; please test it before deploying.");
+		}
+
+		// 3. Configure asynchronous request processing with a bounded task executor
+		String fileWebMvcConfig = this.getWebMvcConfigPath();
+		Document webMvcConfig = this.readXmlFile(fileWebMvcConfig);
+		Element beans = webMvcConfig.getDocumentElement();
+		Element annotationDriven = XmlUtils.findFirstElement("/beans/annotation-driven", beans);
+		if (annotationDriven==null) {
+			this.log.warning("NWCloud-AddOn: No 'mvc:annotation-driven' element found in '" + fileWebMvcConfig + "'.");
+			return;
+		}
+		// The executor is a bean of the default namespace (not of the "mvc" namespace of "annotation-driven")
+		Element executor = this.createSiblingElement(beans, "bean");
+		executor.setAttribute("id", ASYNC_EXECUTOR_ID);
+		executor.setAttribute("class", "org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor");
+		Map<String, String> executorProperties = new LinkedHashMap<String, String>();
+		executorProperties.put("corePoolSize", String.valueOf(poolSize));
+		executorProperties.put("maxPoolSize", String.valueOf(poolSize));
+		executorProperties.put("queueCapacity", String.valueOf(queueCapacity));
+		executorProperties.put("threadNamePrefix", "nwcloud-async-");
+		for (Map.Entry<String, String> executorProperty : executorProperties.entrySet()) {
+			Element property = this.createSiblingElement(beans, "property");
+			property.setAttribute("name", executorProperty.getKey());
+			property.setAttribute("value", executorProperty.getValue());
+			executor.appendChild(property);
+		}
+		beans.insertBefore(executor, annotationDriven.getNextSibling());
+		Element asyncSupport = this.createSiblingElement(annotationDriven, "async-support");
+		asyncSupport.setAttribute("default-timeout", String.valueOf(timeout));
+		asyncSupport.setAttribute("task-executor", ASYNC_EXECUTOR_ID);
+		annotationDriven.appendChild(asyncSupport);
+		String schemaLocation = beans.getAttribute("xsi:schemaLocation");
+		beans.setAttribute("xsi:schemaLocation", schemaLocation.replaceAll("spring-mvc-3\\.[01]\\.xsd", "spring-mvc-3.2.xsd"));
+		this.writeXmlFile(fileWebMvcConfig, webMvcConfig, "Added task executor for asynchronous request processing");
+
+		// 4. Convert controller methods
+		if (methods!=null) {
+			for (String method : methods.split(",")) {
+				if (method.trim().length()>0) {
+					this.convertToCallable(method.trim());
+				}
+			}
+		}
+
+		// 5. Benchmark
+		String benchmarkClass = this.copyTemplateToProject(Path.SRC_TEST_JAVA, "NWCloudAsyncBenchmark", "Benchmark of the threads used by concurrent requests");
+		this.log.info("NWCloud-AddOn: Compare the threads the local server needs for concurrent requests before and after converting a method with 'mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=" + benchmarkClass + " -Dexec.args=\"http://localhost:8080/[application]/[path] 100 20 localhost:9010\"' (start the server with remote JMX on port 9010).");
+
+	}
+
+	/**
+	 * Add the element "async-supported" to a servlet or filter in "web.xml", in front of the first child element
+	 * that has to follow it.
+	 * 
+	 * @param parent Element of servlet or filter
+	 * @param following Names of the child elements that have to follow "async-supported"
+	 */
+	private void addAsyncSupported(Element parent, String... following) {
+
+		if (XmlUtils.findFirstElement("async-supported", parent)!=null) {
+			return;
+		}
+		Element asyncSupported = this.createChildElement(parent.getOwnerDocument(), null, "async-supported", "true");
+		for (String name : following) {
+			Element element = XmlUtils.findFirstElement(name, parent);
+			if (element!=null) {
+				parent.insertBefore(asyncSupported, element);
+				return;
+			}
+		}
+		parent.appendChild(asyncSupported);
+
+	}
+
+	/**
+	 * Create an element with the same namespace (and prefix) as the passed element, e.g. "mvc:async-support"
+	 * for "mvc:annotation-driven".
+	 * 
+	 * @param sibling Element whose namespace is used
+	 * @param localName String of name of the new element without prefix
+	 * @return Element created (not appended)
+	 */
+	private Element createSiblingElement(Element sibling, String localName) {
+
+		String nodeName = sibling.getNodeName();
+		String qualifiedName = (nodeName.indexOf(':')>=0) ? nodeName.substring(0, nodeName.indexOf(':') + 1) + localName : localName;
+		if (sibling.getNamespaceURI()!=null) {
+			return sibling.getOwnerDocument().createElementNS(sibling.getNamespaceURI(), qualifiedName);
+		}
+		return sibling.getOwnerDocument().createElement(qualifiedName);
+
+	}
+
+	/**
+	 * Check if the property "spring.version" of "pom.xml" is older than 3.2. If the version is missing or can't be
+	 * parsed, a warning is logged and it is treated as current.
+	 * 
+	 * @param springVersion Element of property "spring.version", may be null
+	 * @return True if the version is older than 3.2, false otherwise
+	 */
+	private boolean isOutdatedSpringVersion(Element springVersion) {
+
+		if (springVersion==null) {
+			this.log.warning("NWCloud-AddOn: No property 'spring.version' found in 'pom.xml', please make sure Spring 3.2 or later is used.");
+			return false;
+		}
+		String version = springVersion.getTextContent().trim();
+		String[] parts = version.split("\\.");
+		try {
+			int major = Integer.parseInt(parts[0]);
+			int minor = (parts.length>1) ? Integer.parseInt(parts[1]) : 0;
+			return (major<3) || ((major==3) && (minor<2));
+		} catch (NumberFormatException e) {
+			this.log.warning("NWCloud-AddOn: Could not parse Spring version '" + version + "', please make sure Spring 3.2 or later is used.");
+			return false;
+		}
+
+	}
+
+	/**
+	 * Convert a controller method (e.g. "PersonController.list") to return a Callable running its original body.
+	 * The method has to be declared in the Java class of the controller, so methods generated by Roo in AspectJ
+	 * ITDs (e.g. "PersonController_Roo_Controller.aj") have to be pushed in first. Its parameters become final,
+	 * so parameters assigned in the body prevent the conversion.
+	 * The body runs in a thread of the task executor, where the EntityManager bound to the request thread (by
+	 * OpenEntityManagerInViewFilter) isn't available: entities are detached when the Callable returns, so lazy
+	 * relations can't be loaded anymore when the view is rendered. Methods rendering a view of a controller
+	 * whose entity has relations are therefore left unchanged.
+	 * 
+	 * @param method String of simple class name and method name separated by "."
+	 */
+	private void convertToCallable(String method) {
+
+		int index = method.lastIndexOf('.');
+		if (index<=0) {
+			this.log.warning("NWCloud-AddOn: '" + method + "' is not of the form [Controller].[method], e.g. PersonController.list");
+			return;
+		}
+		String className = method.substring(0, index);
+		String methodName = method.substring(index + 1);
+		String file = null;
+		for (File candidate : this.findFiles(new File(this.getPathResolved(Path.SRC_MAIN_JAVA, "")), ".java")) {
+			if (candidate.getName().equals(className + ".java")) {
+				file = candidate.getPath();
+				break;
+			}
+		}
+		if (file==null) {
+			this.log.warning("NWCloud-AddOn: Class '" + className + "' not found in 'src/main/java'.");
+			return;
+		}
+		String content = this.readTextFile(file);
+		JavaSource source = new JavaSource(content);
+		String relation = this.findFormBackingObjectRelation(className);
+		List<JavaSource.MethodDeclaration> declarations = source.findMethods(methodName);
+		if (declarations.isEmpty()) {
+			this.log.warning("NWCloud-AddOn: " + method + " is not declared in '" + className + ".java'. If Roo generates it in an AspectJ ITD, push it in to the Java class first.");
+			return;
+		}
+
+		// Convert from the last to the first declaration, so the positions of the others stay valid
+		int converted = 0;
+		for (int i=declarations.size()-1; i>=0; i--) {
+			JavaSource.MethodDeclaration declaration = declarations.get(i);
+			String returnType = source.getReturnType(declaration);
+			if (returnType.startsWith("Callable") || returnType.equals("void")) {
+				this.log.warning("NWCloud-AddOn: " + method + " returns " + returnType + " and is left unchanged.");
+				continue;
+			}
+			boolean rendersView = returnType.equals("String") && !source.getDeclaration(declaration).contains("@ResponseBody");
+			if (rendersView && (relation!=null)) {
+				this.log.warning("NWCloud-AddOn: " + method + " renders a view of an entity with the relation '" + relation + "', which couldn't be loaded lazily after the method body ran in the task executor (without the EntityManager of the request). It is left unchanged.");
+				continue;
+			}
+			String body = source.getBody(declaration);
+			List<String> parameters = source.getParameters(declaration);
+			String assigned = null;
+			for (String parameter : parameters) {
+				if (Pattern.compile("(?<![\\w.])" + JavaSource.getParameterName(parameter) + "\\s*(=[^=]|\\+\\+|--|[+\\-*/]=)").matcher(body).find()) {
+					assigned = JavaSource.getParameterName(parameter);
+				}
+			}
+			if (assigned!=null) {
+				this.log.warning("NWCloud-AddOn: " + method + " assigns its parameter '" + assigned + "' and is left unchanged.");
+				continue;
+			}
+
+			String callableType = PRIMITIVE_WRAPPERS.containsKey(returnType) ? PRIMITIVE_WRAPPERS.get(returnType) : returnType;
+			String unit = declaration.indent.startsWith("\t") ? "\t" : "    ";
+			StringBuilder newBody = new StringBuilder("{\n");
+			newBody.append(declaration.indent).append(unit).append("return new Callable<").append(callableType).append(">() {\n");
+			newBody.append(declaration.indent).append(unit).append(unit).append("public ").append(callableType).append(" call() throws Exception {");
+			String[] lines = body.replaceAll("\\s+$", "").split("\n", -1);
+			for (int j=0; j<lines.length; j++) {
+				if (j>0) {
+					newBody.append("\n");
+					if (lines[j].trim().length()>0) {
+						newBody.append(unit).append(unit);
+					}
+				}
+				newBody.append(lines[j]);
+			}
+			newBody.append("\n").append(declaration.indent).append(unit).append(unit).append("}\n");
+			newBody.append(declaration.indent).append(unit).append("};\n");
+			newBody.append(declaration.indent).append("}");
+			source.replace(declaration.bodyStart, declaration.bodyEnd + 1, newBody.toString());
+
+			StringBuilder newParameters = new StringBuilder("(");
+			for (String parameter : parameters) {
+				newParameters.append((newParameters.length()>1) ? ", " : "");
+				newParameters.append(parameter.matches("(?s).*\\bfinal\\s.*") ? parameter : "final " + parameter);
+			}
+			source.replace(declaration.parametersStart, declaration.parametersEnd + 1, newParameters.append(")").toString());
+			source.replace(declaration.returnTypeStart, declaration.returnTypeEnd, "Callable<" + callableType + ">");
+			converted++;
+		}
+
+		if (converted>0) {
+			source.addImport("java.util.concurrent.Callable");
+			this.writeTextFile(file, content, source.getContent(), "Converted " + method + " to asynchronous request processing");
+		}
+
+	}
+
+	/**
+	 * Find a JPA relation (e.g. "@ManyToOne") of the entity scaffolded by a controller.
+	 * 
+	 * @param className String of simple class name of the controller
+	 * @return String of name of the first relation field of the entity of the controller, null if it has none
+	 *   (or the class is no scaffolded controller)
+	 */
+	private String findFormBackingObjectRelation(String className) {
+
+		for (JavaType controller : typeLocationService.findTypesWithAnnotation(ROO_WEB_SCAFFOLD)) {
+			if (!controller.getSimpleTypeName().equals(className)) {
+				continue;
+			}
+			AnnotationMetadata scaffold = typeLocationService.getTypeDetails(controller).getAnnotation(ROO_WEB_SCAFFOLD);
+			AnnotationAttributeValue<?> formBackingObject = scaffold.getAttribute(new JavaSymbolName("formBackingObject"));
+			ClassOrInterfaceTypeDetails entity = ((formBackingObject!=null) && (formBackingObject.getValue() instanceof JavaType)) ? typeLocationService.getTypeDetails((JavaType) formBackingObject.getValue()) : null;
+			if (entity==null) {
+				continue;
+			}
+			for (FieldMetadata field : entity.getDeclaredFields()) {
+				for (JavaType relation : JPA_RELATIONS) {
+					if (field.getAnnotation(relation)!=null) {
+						return field.getFieldName().getSymbolName();
+					}
+				}
+			}
+		}
+		return null;
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud disable-async-web
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * This returns true if the command "nwcloud disable-async-web" of our addon should be available to the user.
+	 * We check if the task executor added by "nwcloud enable-async-web" is defined in "webmvc-config.xml".
+	 * 
+	 * @return True if command can be used (asynchronous request processing enabled), false otherwise
+	 */
+	public boolean nwcloudDisableAsyncWebIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebMvcConfigPath())) {
+			Element root = this.readXmlFile(this.getWebMvcConfigPath()).getDocumentElement();
+			result = (XmlUtils.findFirstElement("/beans/bean[@id='" + ASYNC_EXECUTOR_ID + "']", root)!=null);
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This command will revert the command "nwcloud enable-async-web". The task executor and the asynchronous
+	 * support of servlets and filters are removed. The Servlet and Spring versions are kept, as are converted
+	 * controller methods (they have to be converted back, otherwise Spring rejects them).
+	 */
+	public void nwcloudDisableAsyncWeb() {
+
+		String fileWebMvcConfig = this.getWebMvcConfigPath();
+		Document webMvcConfig = this.readXmlFile(fileWebMvcConfig);
+		this.removeElements(webMvcConfig.getDocumentElement(), "/beans/bean[@id='" + ASYNC_EXECUTOR_ID + "']");
+		this.removeElements(webMvcConfig.getDocumentElement(), "/beans/annotation-driven/async-support");
+		this.writeXmlFile(fileWebMvcConfig, webMvcConfig, "Removed task executor for asynchronous request processing");
+
+		String fileWebXml = this.getWebXmlPath();
+		if (fileManager.exists(fileWebXml)) {
+			Document document = this.readXmlFile(fileWebXml);
+			Element root = document.getDocumentElement();
+			this.removeElements(root, "/web-app/servlet/async-supported");
+			this.removeElements(root, "/web-app/filter/async-supported");
+			this.removeElements(root, "/web-app/filter-mapping/dispatcher[.='ASYNC']");
+			// Only mapping the REQUEST dispatcher is the default
+			for (Element filterMapping : XmlUtils.findElements("/web-app/filter-mapping", root)) {
+				List<Element> dispatchers = XmlUtils.findElements("dispatcher", filterMapping);
+				if ((dispatchers.size()==1) && dispatchers.get(0).getTextContent().trim().equals("REQUEST")) {
+					this.removeElements(filterMapping, "dispatcher");
+				}
+			}
+			this.writeXmlFile(fileWebXml, document, "Disabled asynchronous request processing");
+		}
+
+		List<String> converted = new ArrayList<String>();
+		for (File source : this.findFiles(new File(this.getPathResolved(Path.SRC_MAIN_JAVA, "")), ".java")) {
+			if (this.readTextFile(source.getPath()).contains("return new Callable<")) {
+				converted.add(source.getName());
+			}
+		}
+		if (!converted.isEmpty()) {
+			this.log.warning("NWCloud-AddOn: Please convert the methods returning a Callable back to synchronous ones in " + converted);
+		}
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enforce-paging
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Method bodies generated by Roo in the controller ITDs, from which the names needed for the bounded versions
+	 * are extracted: entity, finder of a page of entries, count method, model attribute and view (list), and
+	 * finder of all entities (listJson)
+	 */
+	private static final Pattern ROO_LIST_ENTRIES = Pattern.compile("uiModel\\.addAttribute\\(\"(\\w+)\",\\s*(\\w+)\\.(find\\w+Entries)\\(firstResult,\\s*sizeNo\\)\\)");
+	private static final Pattern ROO_LIST_COUNT = Pattern.compile("(\\w+)\\.(count\\w+)\\(\\)");
+	private static final Pattern ROO_LIST_VIEW = Pattern.compile("return\\s+\"([^\"]+)\";");
+	private static final Pattern ROO_LIST_JSON = Pattern.compile("List<(\\w+)>\\s+result\\s*=\\s*(\\w+)\\.(findAll\\w+)\\(\\);");
+
+	/**
+	 * This returns true if the command "nwcloud enforce-paging" of our addon should be available to the user.
+	 * We check if the project has controllers scaffolded by Roo.
+	 * 
+	 * @return True if command can be used (project with scaffolded controllers), false otherwise
+	 */
+	public boolean nwcloudEnforcePagingIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebXmlPath())) {
+			result = !typeLocationService.findTypesWithAnnotation(ROO_WEB_SCAFFOLD).isEmpty();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This is the command "nwcloud enforce-paging". For each controller scaffolded by Roo (annotated with
+	 * "@RooWebScaffold"), the methods returning lists of entities are pushed in from the ITDs generated by
+	 * Roo to the Java class of the controller (so Roo doesn't generate them anymore) and changed:
+	 * 1.) "list" always shows a page, whose size is at most "maxSize" (instead of all entities if no page is requested).
+	 * 2.) "listJson" (of JSON controllers, "@RooWebJson") returns a page, requested by parameters "page" and "size",
+	 *     and optionally by the id of the last entity of the previous page ("afterId", keyset paging). The generation
+	 *     of "listJson" is disabled in "@RooWebJson", as its signature changes.
+	 * 3.) Finders ("find..." and "jsonFind..." methods using dynamic finders) return at most "maxSize" entities.
+	 * Methods already declared in the Java class of a controller are left unchanged.
+	 * 
+	 * @param defaultSize Count of entities per page if no size is requested
+	 * @param maxSize Maximum count of entities per page and of finder results
+	 * @param keyset Add keyset paging to "listJson"
+	 */
+	public void nwcloudEnforcePaging(int defaultSize, int maxSize, boolean keyset) {
+
+		if ((defaultSize<1) || (maxSize<defaultSize)) {
+			this.log.warning("NWCloud-AddOn: The default size has to be at least 1, and the maximum size at least the default size.");
+			return;
+		}
+
+		for (JavaType controller : typeLocationService.findTypesWithAnnotation(ROO_WEB_SCAFFOLD)) {
+			ClassOrInterfaceTypeDetails details = typeLocationService.getTypeDetails(controller);
+			String file = (details!=null) ? typeLocationService.getPhysicalTypeCanonicalPath(details.getDeclaredByMetadataId()) : null;
+			if ((file==null) || !fileManager.exists(file)) {
+				this.log.warning("NWCloud-AddOn: Source of controller '" + controller.getFullyQualifiedTypeName() + "' not found.");
+				continue;
+			}
+			String itdPrefix = file.substring(0, file.length() - ".java".length()) + "_Roo_Controller";
+			String content = this.readTextFile(file);
+			JavaSource source = new JavaSource(content);
+			List<String> changes = new ArrayList<String>();
+
+			// 1. List view
+			JavaSource itd = fileManager.exists(itdPrefix + ".aj") ? new JavaSource(this.readTextFile(itdPrefix + ".aj")) : null;
+			if ((itd!=null) && this.pushInBoundedList(source, itd, defaultSize, maxSize)) {
+				changes.add("list");
+			}
+
+			// 2. + 3. JSON list and finders
+			JavaSource jsonItd = fileManager.exists(itdPrefix + "_Json.aj") ? new JavaSource(this.readTextFile(itdPrefix + "_Json.aj")) : null;
+			if ((jsonItd!=null) && (details.getAnnotation(ROO_WEB_JSON)!=null) && this.pushInBoundedListJson(source, jsonItd, defaultSize, maxSize, keyset)) {
+				changes.add("listJson");
+			}
+			for (String itdFile : new String[] { itdPrefix + "_Finder.aj", itdPrefix + "_Json.aj" }) {
+				if (fileManager.exists(itdFile)) {
+					changes.addAll(this.pushInBoundedFinders(source, new JavaSource(this.readTextFile(itdFile)), maxSize));
+				}
+			}
+
+			if (!changes.isEmpty()) {
+				this.writeTextFile(file, content, source.getContent(), "Enforced paging in " + changes);
+			} else {
+				this.log.info("NWCloud-AddOn: " + controller.getSimpleTypeName() + " has no unbounded list methods generated by Roo (anymore).");
+			}
+		}
+
+	}
+
+	/**
+	 * Push in the method "list" from the controller ITD and make it always show a bounded page.
+	 * 
+	 * @return True if the method was pushed in, false if it is declared in the controller already or differs from the one generated by Roo
+	 */
+	private boolean pushInBoundedList(JavaSource source, JavaSource itd, int defaultSize, int maxSize) {
+
+		List<JavaSource.MethodDeclaration> methods = itd.findMethods("list");
+		if (methods.isEmpty() || !source.findMethods("list").isEmpty()) {
+			return false;
+		}
+		JavaSource.MethodDeclaration method = methods.get(0);
+		String body = itd.getBody(method);
+		Matcher entries = ROO_LIST_ENTRIES.matcher(body);
+		Matcher count = ROO_LIST_COUNT.matcher(body);
+		Matcher view = ROO_LIST_VIEW.matcher(body);
+		if (!entries.find() || !count.find() || !view.find()) {
+			this.log.warning("NWCloud-AddOn: The method 'list' in the ITD differs from the one generated by Roo and is left unchanged.");
+			return false;
+		}
+
+		String indent = method.indent + "    ";
+		StringBuilder newBody = new StringBuilder("{\n");
+		newBody.append(indent).append("// Always show a page of at most " + maxSize + " entities (changed by \"nwcloud enforce-paging\")\n");
+		newBody.append(indent).append("int sizeNo = Math.min(size == null || size.intValue() < 1 ? " + defaultSize + " : size.intValue(), " + maxSize + ");\n");
+		newBody.append(indent).append("final int firstResult = page == null || page.intValue() < 1 ? 0 : (page.intValue() - 1) * sizeNo;\n");
+		newBody.append(indent).append("uiModel.addAttribute(\"" + entries.group(1) + "\", " + entries.group(2) + "." + entries.group(3) + "(firstResult, sizeNo));\n");
+		newBody.append(indent).append("float nrOfPages = (float) " + count.group(1) + "." + count.group(2) + "() / sizeNo;\n");
+		newBody.append(indent).append("uiModel.addAttribute(\"maxPages\", (int) ((nrOfPages > (int) nrOfPages || nrOfPages == 0.0) ? nrOfPages + 1 : nrOfPages));\n");
+		if (body.contains("addDateTimeFormatPatterns(uiModel);")) {
+			newBody.append(indent).append("addDateTimeFormatPatterns(uiModel);\n");
+		}
+		newBody.append(indent).append("return \"" + view.group(1) + "\";\n");
+		newBody.append(method.indent).append("}");
+
+		String declaration = itd.getDeclaration(method);
+		String signature = declaration.substring(0, declaration.length() - body.length() - 2);
+		this.pushIn(source, itd, signature.replace(method.name + "(", "list(") + newBody);
+		return true;
+
+	}
+
+	/**
+	 * Push in the method "listJson" from the JSON controller ITD and make it return a bounded page, and disable its
+	 * generation in "@RooWebJson" (as its parameters differ from the generated one).
+	 * 
+	 * @return True if the method was pushed in, false if it is declared in the controller already or differs from the one generated by Roo
+	 */
+	private boolean pushInBoundedListJson(JavaSource source, JavaSource itd, int defaultSize, int maxSize, boolean keyset) {
+
+		List<JavaSource.MethodDeclaration> methods = itd.findMethods("listJson");
+		if (methods.isEmpty() || !source.findMethods("listJson").isEmpty()) {
+			return false;
+		}
+		JavaSource.MethodDeclaration method = methods.get(0);
+		String body = itd.getBody(method);
+		Matcher list = ROO_LIST_JSON.matcher(body);
+		Matcher annotation = Pattern.compile("@RooWebJson\\s*\\(([^)]*)\\)").matcher(source.getContent());
+		if (!list.find() || !annotation.find()) {
+			this.log.warning("NWCloud-AddOn: The method 'listJson' in the ITD differs from the one generated by Roo and is left unchanged.");
+			return false;
+		}
+		String entity = list.group(1);
+
+		// Find the finder of a page of entries in the ITD of the entity (e.g. "findPersonEntries")
+		String entriesFinder = "find" + entity + "Entries";
+		String[] id = this.getEntityId(entity);
+
+		String indent = method.indent + "    ";
+		StringBuilder newMethod = new StringBuilder();
+		String declaration = itd.getDeclaration(method);
+		newMethod.append(declaration.substring(0, method.lineStart - itd.getDeclarationStart(method)));
+		newMethod.append(method.indent).append("public ResponseEntity<String> listJson(@RequestParam(value = \"page\", required = false) Integer page, @RequestParam(value = \"size\", required = false) Integer size");
+		if (keyset) {
+			newMethod.append(", @RequestParam(value = \"afterId\", required = false) " + id[1] + " afterId");
+		}
+		newMethod.append(") {\n");
+		newMethod.append(indent).append("HttpHeaders headers = new HttpHeaders();\n");
+		newMethod.append(indent).append("headers.add(\"Content-Type\", \"application/json; charset=utf-8\");\n");
+		newMethod.append(indent).append("// Return a page of at most " + maxSize + " entities (changed by \"nwcloud enforce-paging\")\n");
+		newMethod.append(indent).append("int sizeNo = Math.min(size == null || size.intValue() < 1 ? " + defaultSize + " : size.intValue(), " + maxSize + ");\n");
+		newMethod.append(indent).append("List<" + entity + "> result;\n");
+		if (keyset) {
+			newMethod.append(indent).append("if (afterId != null) {\n");
+			newMethod.append(indent).append("    // Keyset paging: the entities following the last one of the previous page, which doesn't slow down for later pages\n");
+			newMethod.append(indent).append("    result = " + entity + ".entityManager().createQuery(\"SELECT o FROM " + entity + " o WHERE o." + id[0] + " > :afterId ORDER BY o." + id[0] + "\", " + entity + ".class).setParameter(\"afterId\", afterId).setMaxResults(sizeNo).getResultList();\n");
+			newMethod.append(indent).append("} else {\n");
+			newMethod.append(indent).append("    // Same order as the keyset query, so the id of the last entity continues this page without gaps\n");
+			newMethod.append(indent).append("    result = " + entity + ".entityManager().createQuery(\"SELECT o FROM " + entity + " o ORDER BY o." + id[0] + "\", " + entity + ".class).setFirstResult(page == null || page.intValue() < 1 ? 0 : (page.intValue() - 1) * sizeNo).setMaxResults(sizeNo).getResultList();\n");
+			newMethod.append(indent).append("}\n");
+			newMethod.append(indent).append("if (result.size() == sizeNo) {\n");
+			newMethod.append(indent).append("    headers.add(\"X-Next-After-Id\", String.valueOf(result.get(result.size() - 1).get" + Character.toUpperCase(id[0].charAt(0)) + id[0].substring(1) + "()));\n");
+			newMethod.append(indent).append("}\n");
+		} else {
+			newMethod.append(indent).append("result = " + entity + "." + entriesFinder + "(page == null || page.intValue() < 1 ? 0 : (page.intValue() - 1) * sizeNo, sizeNo);\n");
+		}
+		newMethod.append(indent).append("return new ResponseEntity<String>(" + entity + ".toJsonArray(result), headers, HttpStatus.OK);\n");
+		newMethod.append(method.indent).append("}");
+
+		this.pushIn(source, itd, newMethod.toString());
+		source.addImport("org.springframework.web.bind.annotation.RequestParam");
+
+		// Disable generation of "listJson" by Roo
+		if (!annotation.group(1).contains("listJsonMethod")) {
+			String attributes = annotation.group(1).trim();
+			source.replace(annotation.start(1), annotation.end(1), attributes + (attributes.length()>0 ? ", " : "") + "listJsonMethod = \"\"");
+		}
+		return true;
+
+	}
+
+	/**
+	 * Push in the finder methods of a controller ITD that return all results of a dynamic finder, and limit the
+	 * count of results to "maxSize".
+	 * 
+	 * @return List of names of the methods pushed in
+	 */
+	private List<String> pushInBoundedFinders(JavaSource source, JavaSource itd, int maxSize) {
+
+		List<String> result = new ArrayList<String>();
+		Matcher finder = Pattern.compile("(?m)^\\s*public\\s+[\\w<>]+\\s+\\w+\\.((?:json)?[fF]ind\\w+)\\s*\\(").matcher(itd.getContent());
+		while (finder.find()) {
+			String name = finder.group(1);
+			if (result.contains(name) || !source.findMethods(name).isEmpty()) {
+				continue;
+			}
+			for (JavaSource.MethodDeclaration method : itd.findMethods(name)) {
+				String body = itd.getBody(method);
+				if (body.contains(".getResultList()")) {
+					String declaration = itd.getDeclaration(method);
+					String bounded = declaration.replace(method.name + "(", name + "(").replace(".getResultList()", ".setMaxResults(" + maxSize + ").getResultList()");
+					this.pushIn(source, itd, bounded);
+					result.add(name);
+				}
+			}
+		}
+		return result;
+
+	}
+
+	/**
+	 * Add a method declaration taken from an ITD to the Java class, with the imports of the ITD it uses.
+	 */
+	private void pushIn(JavaSource source, JavaSource itd, String method) {
+
+		source.addMember(method);
+		for (String type : itd.getImports()) {
+			if (Pattern.compile("\\b" + Pattern.quote(type.substring(type.lastIndexOf('.') + 1)) + "\\b").matcher(method).find()) {
+				source.addImport(type);
+			}
+		}
+
+	}
+
+	/**
+	 * Get the name and the type of the id of an entity from its Java class or its JPA ITD generated by Roo.
+	 * 
+	 * @param entity String of simple name of the entity
+	 * @return String[] of name and type of the id, { "id", "Long" } if they can't be found
+	 */
+	private String[] getEntityId(String entity) {
+
+		Pattern idField = Pattern.compile("@Id\\b[^;]*?\\s([\\w.]+)\\s+(?:\\w+\\.)?(\\w+)\\s*;");
+		for (JavaType type : typeLocationService.findTypesWithAnnotation(ROO_JPA_ACTIVE_RECORD, ROO_JPA_ENTITY)) {
+			if (!type.getSimpleTypeName().equals(entity)) {
+				continue;
+			}
+			ClassOrInterfaceTypeDetails details = typeLocationService.getTypeDetails(type);
+			String file = (details!=null) ? typeLocationService.getPhysicalTypeCanonicalPath(details.getDeclaredByMetadataId()) : null;
+			if (file==null) {
+				continue;
+			}
+			String base = file.substring(0, file.length() - ".java".length());
+			for (String candidate : new String[] { file, base + "_Roo_Jpa_Entity.aj", base + "_Roo_Entity.aj" }) {
+				if (fileManager.exists(candidate)) {
+					Matcher matcher = idField.matcher(this.readTextFile(candidate));
+					if (matcher.find()) {
+						return new String[] { matcher.group(2), matcher.group(1) };
+					}
+				}
+			}
+		}
+		return new String[] { "id", "Long" };
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enable-fast-json
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Names of the methods of the JSON controller ITDs generated by Roo that return JSON documents built by
+	 * "toJson" / "toJsonArray" of the entities
+	 */
+	private static final Pattern ROO_JSON_METHODS = Pattern.compile("(?m)^\\s*public\\s+[\\w<>]+\\s+(?:\\w+\\.)?(showJson|listJson|jsonFind\\w+)\\s*\\(");
+
+	private static final String JSON_CONVERTER_NAME = "NWCloudJsonHttpMessageConverter";
+
+	/**
+	 * This returns true if the command "nwcloud enable-fast-json" of our addon should be available to the user.
+	 * We check if the project has JSON controllers generated by Roo.
+	 * 
+	 * @return True if command can be used (project with JSON controllers), false otherwise
+	 */
+	public boolean nwcloudEnableFastJsonIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getWebMvcConfigPath())) {
+			result = !typeLocationService.findTypesWithAnnotation(ROO_WEB_JSON).isEmpty();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This is the command "nwcloud enable-fast-json". The JSON responses of the controllers generated by Roo
+	 * ("@RooWebJson") are written directly to the response stream, instead of building the whole JSON document
+	 * as String in memory first:
+	 * 1.) A message converter streaming entities and collections with flexjson is generated and registered in
+	 *     "mvc:annotation-driven" of "webmvc-config.xml". It writes the same JSON as "toJson" / "toJsonArray".
+	 * 2.) The methods "showJson", "listJson" and "jsonFind..." of the controllers are pushed in from the ITDs
+	 *     (or changed if they are declared in the Java class already, e.g. by "nwcloud enforce-paging") to
+	 *     return the entity or the list of entities instead of their JSON string.
+	 * 3.) A benchmark comparing both ways of writing a large list of entities is generated in "src/test/java".
+	 * 4.) The ETag filter of "nwcloud enable-web-cache" buffers the whole response, so it is replaced by the
+	 *     subclass "NWCloudEtagFilter" skipping the JSON requests (the other responses still get an ETag).
+	 * Entities whose JSON has a root name ("@RooJson(rootName = ...)") are left unchanged.
+	 */
+	public void nwcloudEnableFastJson() {
+
+		// 1. Change the JSON methods of the controllers
+		Set<String> types = new TreeSet<String>();
+		Set<String> deepSerializedTypes = new TreeSet<String>();
+		String benchmarkEntity = null;
+		for (JavaType controller : typeLocationService.findTypesWithAnnotation(ROO_WEB_JSON)) {
+			ClassOrInterfaceTypeDetails details = typeLocationService.getTypeDetails(controller);
+			AnnotationMetadata json = (details!=null) ? details.getAnnotation(ROO_WEB_JSON) : null;
+			AnnotationAttributeValue<?> jsonObject = (json!=null) ? json.getAttribute(new JavaSymbolName("jsonObject")) : null;
+			String file = (details!=null) ? typeLocationService.getPhysicalTypeCanonicalPath(details.getDeclaredByMetadataId()) : null;
+			if ((jsonObject==null) || !(jsonObject.getValue() instanceof JavaType) || (file==null) || !fileManager.exists(file)) {
+				this.log.warning("NWCloud-AddOn: Source or JSON entity of controller '" + controller.getFullyQualifiedTypeName() + "' not found.");
+				continue;
+			}
+			JavaType entity = (JavaType) jsonObject.getValue();
+
+			// Serialization of the entity has to be the same as in "toJson" of its ITD
+			ClassOrInterfaceTypeDetails entityDetails = typeLocationService.getTypeDetails(entity);
+			String entityFile = (entityDetails!=null) ? typeLocationService.getPhysicalTypeCanonicalPath(entityDetails.getDeclaredByMetadataId()) : null;
+			String entityJsonItd = (entityFile!=null) ? entityFile.substring(0, entityFile.length() - ".java".length()) + "_Roo_Json.aj" : null;
+			if ((entityJsonItd!=null) && fileManager.exists(entityJsonItd)) {
+				String entityJson = this.readTextFile(entityJsonItd);
+				if (Pattern.compile("serialize\\(\\s*\"").matcher(entityJson).find()) {
+					this.log.warning("NWCloud-AddOn: The JSON of entity '" + entity.getSimpleTypeName() + "' has a root name, " + controller.getSimpleTypeName() + " is left unchanged.");
+					continue;
+				}
+				if (entityJson.contains(".deepSerialize(")) {
+					deepSerializedTypes.add(entity.getFullyQualifiedTypeName());
+				}
+			}
+			types.add(entity.getFullyQualifiedTypeName());
+			if (benchmarkEntity==null) {
+				benchmarkEntity = entity.getFullyQualifiedTypeName();
+			}
+
+			String content = this.readTextFile(file);
+			JavaSource source = new JavaSource(content);
+			String itdFile = file.substring(0, file.length() - ".java".length()) + "_Roo_Controller_Json.aj";
+			JavaSource itd = fileManager.exists(itdFile) ? new JavaSource(this.readTextFile(itdFile)) : null;
+			Set<String> names = new LinkedHashSet<String>();
+			for (JavaSource candidate : new JavaSource[] { source, itd }) {
+				Matcher matcher = (candidate!=null) ? ROO_JSON_METHODS.matcher(candidate.getContent()) : null;
+				while ((matcher!=null) && matcher.find()) {
+					names.add(matcher.group(1));
+				}
+			}
+
+			List<String> changes = new ArrayList<String>();
+			for (String name : names) {
+				List<JavaSource.MethodDeclaration> methods = source.findMethods(name);
+				if (!methods.isEmpty()) {
+					// Change the methods declared in the controller already (from the last one, so the positions of the others stay valid)
+					for (int i=methods.size()-1; i>=0; i--) {
+						JavaSource.MethodDeclaration method = methods.get(i);
+						String streaming = this.toStreamingJson(source.getDeclaration(method), entity.getSimpleTypeName());
+						if (streaming!=null) {
+							source.replace(source.getDeclarationStart(method), method.bodyEnd + 1, streaming);
+							changes.add(name);
+						}
+					}
+				} else if (itd!=null) {
+					for (JavaSource.MethodDeclaration method : itd.findMethods(name)) {
+						String streaming = this.toStreamingJson(itd.getDeclaration(method).replace(method.name + "(", name + "("), entity.getSimpleTypeName());
+						if (streaming!=null) {
+							this.pushIn(source, itd, streaming);
+							changes.add(name);
+						}
+					}
+				}
+			}
+
+			if (!changes.isEmpty()) {
+				if (source.getContent().contains("List<")) {
+					source.addImport("java.util.List");
+				}
+				if (source.getContent().contains(JSON_CONVERTER_NAME + ".EntityList<")) {
+					source.addImport(this.getProjectSupportPackage() + "." + JSON_CONVERTER_NAME);
+				}
+				this.writeTextFile(file, content, source.getContent(), "Streaming JSON responses in " + changes);
+			} else {
+				this.log.info("NWCloud-AddOn: " + controller.getSimpleTypeName() + " has no JSON methods building JSON strings (anymore).");
+			}
+		}
+		if (types.isEmpty()) {
+			this.log.warning("NWCloud-AddOn: No JSON controllers found whose responses can be streamed.");
+			return;
+		}
+
+		// 2. Register the streaming message converter (with the entity types of all JSON controllers)
+		String converterClass = this.copyTemplateToProject(JSON_CONVERTER_NAME, "Message converter streaming JSON responses");
+		String fileWebMvcConfig = this.getWebMvcConfigPath();
+		Document webMvcConfig = this.readXmlFile(fileWebMvcConfig);
+		Element beans = webMvcConfig.getDocumentElement();
+		Element annotationDriven = XmlUtils.findFirstElement("/beans/annotation-driven", beans);
+		if (annotationDriven==null) {
+			this.log.warning("NWCloud-AddOn: No 'mvc:annotation-driven' element found in '" + fileWebMvcConfig + "'.");
+			return;
+		}
+		Element messageConverters = XmlUtils.findFirstElement("message-converters", annotationDriven);
+		if (messageConverters==null) {
+			// "message-converters" has to be the first child element of "mvc:annotation-driven"
+			messageConverters = this.createSiblingElement(annotationDriven, "message-converters");
+			messageConverters.setAttribute("register-defaults", "true");
+			annotationDriven.insertBefore(messageConverters, annotationDriven.getFirstChild());
+		}
+		this.removeElements(messageConverters, "bean[@class='" + converterClass + "']");
+		Element converter = this.createSiblingElement(beans, "bean");
+		converter.setAttribute("class", converterClass);
+		Map<String, Set<String>> converterProperties = new LinkedHashMap<String, Set<String>>();
+		converterProperties.put("types", types);
+		converterProperties.put("deepSerializedTypes", deepSerializedTypes);
+		for (Map.Entry<String, Set<String>> converterProperty : converterProperties.entrySet()) {
+			if (converterProperty.getValue().isEmpty()) {
+				continue;
+			}
+			Element property = this.createSiblingElement(beans, "property");
+			property.setAttribute("name", converterProperty.getKey());
+			Element list = this.createSiblingElement(beans, "list");
+			for (String type : converterProperty.getValue()) {
+				Element value = this.createSiblingElement(beans, "value");
+				value.setTextContent(type);
+				list.appendChild(value);
+			}
+			property.appendChild(list);
+			converter.appendChild(property);
+		}
+		// Custom converters are used in front of the default ones
+		messageConverters.insertBefore(converter, messageConverters.getFirstChild());
+		String schemaLocation = beans.getAttribute("xsi:schemaLocation");
+		beans.setAttribute("xsi:schemaLocation", schemaLocation.replace("spring-mvc-3.0.xsd", "spring-mvc-3.1.xsd"));
+		this.writeXmlFile(fileWebMvcConfig, webMvcConfig, "Registered message converter streaming JSON responses");
+
+		// 3. Benchmark
+		String benchmarkClass = this.copyTemplateToProject(Path.SRC_TEST_JAVA, "NWCloudJsonBenchmark", "Benchmark of streaming JSON responses");
+		this.log.info("NWCloud-AddOn: Compare the throughput and allocation of both ways of writing JSON with 'mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=" + benchmarkClass + " -Dexec.args=\"" + benchmarkEntity + " 10000\"'.");
+
+		// 4. Exclude the streamed responses from the ETag filter of "nwcloud enable-web-cache" (it buffers the whole response)
+		String fileWebXml = this.getWebXmlPath();
+		if (fileManager.exists(fileWebXml)) {
+			Document webXml = this.readXmlFile(fileWebXml);
+			Element etagFilterClass = XmlUtils.findFirstElement("/web-app/filter[filter-name='" + ETAG_FILTER_NAME + "']/filter-class", webXml.getDocumentElement());
+			if ((etagFilterClass!=null) && ETAG_FILTER_CLASS.equals(etagFilterClass.getTextContent().trim())) {
+				etagFilterClass.setTextContent(this.copyTemplateToProject(STREAMING_ETAG_FILTER_NAME, "ETag filter skipping streamed JSON responses"));
+				this.writeXmlFile(fileWebXml, webXml, "ETag filter skips streamed JSON responses");
+				this.log.info("NWCloud-AddOn: The ETag filter buffers whole responses, so JSON responses get no ETag anymore.");
+			}
+		}
+
+	}
+
+	/**
+	 * Change a JSON method of a controller to return the entity (or the list of entities) as body of the
+	 * "ResponseEntity", instead of the JSON string built by "toJson" (or "toJsonArray").
+	 * 
+	 * @param declaration String of method declaration
+	 * @param entity String of simple name of the entity of the controller
+	 * @return String of changed method declaration, or null if the method doesn't build a JSON string
+	 */
+	private String toStreamingJson(String declaration, String entity) {
+
+		String bodyType;
+		JavaSource method = new JavaSource(declaration);
+		String entityList = JSON_CONVERTER_NAME + ".EntityList<" + entity + ">";
+		Matcher array = Pattern.compile("\\b" + Pattern.quote(entity) + "\\.toJsonArray\\(").matcher(declaration);
+		Matcher unwrapped = Pattern.compile("new\\s+ResponseEntity<List<" + Pattern.quote(entity) + ">>\\((?!new\\s)").matcher(declaration);
+		if (array.find()) {
+			// Lists are wrapped, so the converter doesn't write other lists returned by the application
+			bodyType = "List<" + entity + ">";
+			do {
+				int end = method.findClosing(array.end() - 1);
+				if (end<0) {
+					return null;
+				}
+				method.replace(array.start(), end + 1, "new " + entityList + "(" + method.getContent().substring(array.end(), end) + ")");
+				array.reset(method.getContent());
+			} while (array.find());
+		} else if (unwrapped.find()) {
+			// Changed by a former version of this command, which didn't wrap the lists
+			return declaration.replaceAll("(new\\s+ResponseEntity<List<" + Pattern.quote(entity) + ">>\\()(?!new\\s)(\\w+)", "$1new " + Matcher.quoteReplacement(entityList) + "($2)");
+		} else if (Pattern.compile("\\b\\w+\\.toJson\\(\\)").matcher(declaration).find()) {
+			bodyType = entity;
+			method.replace(0, declaration.length(), declaration.replaceAll("\\b(\\w+)\\.toJson\\(\\)", "$1"));
+		} else {
+			return null;
+		}
+		return method.getContent().replace("ResponseEntity<String>", "ResponseEntity<" + bodyType + ">");
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud import-data
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Types of entity fields the generated importer converts CSV values to (besides enums and references to
+	 * other entities by their id). Primitive types have the names of their wrapper types in Roo.
+	 */
+	private static final List<String> IMPORTABLE_TYPES = Arrays.asList(
+			"java.lang.String", "java.lang.Long", "java.lang.Integer", "java.lang.Short", "java.lang.Byte",
+			"java.lang.Double", "java.lang.Float", "java.lang.Boolean", "java.lang.Character",
+			"java.math.BigDecimal", "java.math.BigInteger", "java.util.Date", "java.util.Calendar");
+
+	private static final String CSV_IMPORTER_NAME = "NWCloudCsvImporter";
+
+	/**
+	 * This returns true if the command "nwcloud import-data" of our addon should be available to the user.
+	 * We check if the project has JPA entities.
+	 * 
+	 * @return True if command can be used (project with JPA entities), false otherwise
+	 */
+	public boolean nwcloudImportDataIsAvailable() {
+
+		boolean result = false;
+
+		if (this.getPOM()!=null) {
+			result = !typeLocationService.findTypesWithAnnotation(ROO_JPA_ACTIVE_RECORD, ROO_JPA_ENTITY).isEmpty();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This is the command "nwcloud import-data". It prepares the import of a CSV file into an entity:
+	 * 1.) The columns of the file (named in its header line) are mapped to the fields of the entity with the
+	 *     same names (ignoring case, blanks, "_" and "-"), as declared in the Java class of the entity. The
+	 *     mapping is written to "src/test/resources/nwcloud-import-[entity]-[file].properties", where it can be
+	 *     adapted (an existing mapping is kept).
+	 * 2.) The importer "NWCloudCsvImporter" is generated in "src/test/java" (it isn't deployed). It streams the
+	 *     file and persists the entities in batches of "batchSize" rows, each in one transaction and JDBC batch,
+	 *     clearing the persistence context after each batch, and reports the rows imported per second.
+	 * 3.) If "run" is true, the importer is run with Maven right away, using the database configured in
+	 *     "database.properties" of the project.
+	 * 
+	 * @param entity JavaType of the entity to import the rows into
+	 * @param file String of name of the CSV file (absolute, or relative to the root of the project)
+	 * @param batchSize Count of rows persisted in one transaction and JDBC batch
+	 * @param separator String of column separator ("tab" for tabulators)
+	 * @param run Run the import with Maven
+	 */
+	public void nwcloudImportData(JavaType entity, String file, int batchSize, String separator, boolean run) {
+
+		if (batchSize<1) {
+			this.log.warning("NWCloud-AddOn: The batch size has to be at least 1.");
+			return;
+		}
+		if ((separator==null) || (separator.length()==0)) {
+			this.log.warning("NWCloud-AddOn: The separator must not be empty.");
+			return;
+		}
+		char separatorChar = ("tab".equalsIgnoreCase(separator) || "\\t".equals(separator)) ? '\t' : separator.charAt(0);
+		Set<JavaType> entities = typeLocationService.findTypesWithAnnotation(ROO_JPA_ACTIVE_RECORD, ROO_JPA_ENTITY);
+		ClassOrInterfaceTypeDetails details = typeLocationService.getTypeDetails(entity);
+		if (!entities.contains(entity) || (details==null)) {
+			this.log.warning("NWCloud-AddOn: '" + entity.getFullyQualifiedTypeName() + "' is not a JPA entity of the project.");
+			return;
+		}
+		File csv = new File(file);
+		if (!csv.isAbsolute()) {
+			csv = new File(this.getPOM().getRoot(), file);
+		}
+		if (!csv.isFile()) {
+			this.log.warning("NWCloud-AddOn: The file '" + csv.getPath() + "' does not exist.");
+			return;
+		}
+
+		// 1. Map the columns to the fields of the entity
+		String fileMapping = this.getPathResolved(Path.SRC_TEST_RESOURCES, "nwcloud-import-" + entity.getSimpleTypeName() + "-" + csv.getName().replaceFirst("\\.[^.]*$", "").replaceAll("[^\\w.-]", "_") + ".properties");
+		if (fileManager.exists(fileMapping)) {
+			this.log.info("NWCloud-AddOn: Keeping existing mapping '" + fileMapping + "' (delete it to map the columns again).");
+		} else {
+			List<String> fields = new ArrayList<String>();
+			for (FieldMetadata field : details.getDeclaredFields()) {
+				String name = field.getFieldName().getSymbolName();
+				if (Modifier.isStatic(field.getModifier()) || Modifier.isTransient(field.getModifier())) {
+					continue;
+				}
+				if (this.isImportableType(field.getFieldType(), entities)) {
+					fields.add(name);
+				} else {
+					this.log.info("NWCloud-AddOn: Field '" + name + "' of type " + field.getFieldType().getSimpleTypeName() + " can't be imported.");
+				}
+			}
+			List<String> columns = this.readCsvHeader(csv, separatorChar);
+			List<String> columnFields = mapColumnsToFields(columns, fields);
+
+			StringBuilder mapping = new StringBuilder();
+			mapping.append("# =============================================================================\n");
+			mapping.append("# SAP HANA Cloud - Import of \"" + csv.getName() + "\" into entity " + entity.getSimpleTypeName() + "\n");
+			mapping.append("# =============================================================================\n");
+			mapping.append("# Generated by the Roo command \"nwcloud import-data\". The database is configured\n");
+			mapping.append("# in \"META-INF/spring/database.properties\"; its properties can be overridden by\n");
+			mapping.append("# system properties, e.g. -Ddatabase.url=jdbc:hsqldb:file:target/importdb to\n");
+			mapping.append("# import into a local embedded database.\n\n");
+			mapping.append("entity=" + entity.getFullyQualifiedTypeName() + "\n");
+			mapping.append("file=" + this.escapePropertyValue(csv.getAbsolutePath()) + "\n");
+			mapping.append("encoding=UTF-8\n");
+			mapping.append("separator=" + this.escapePropertyValue(String.valueOf(separatorChar)) + "\n");
+			mapping.append("header=true\n");
+			mapping.append("batchSize=" + batchSize + "\n");
+			mapping.append("# Format of dates (java.text.SimpleDateFormat)\n");
+			mapping.append("dateFormat=yyyy-MM-dd\n\n");
+			mapping.append("# Columns (1 is the first one) and the fields of the entity they are imported\n");
+			mapping.append("# into. Columns without a field are ignored. Other entities are referenced by id.\n");
+			int mapped = 0;
+			for (int i=0; i<columns.size(); i++) {
+				String column = columns.get(i).replaceAll("\\s+", " ").trim();
+				String field = columnFields.get(i);
+				if (field!=null) {
+					mapping.append("# " + column + "\n");
+					mapping.append("column." + (i + 1) + "=" + field + "\n");
+					mapped++;
+				} else {
+					mapping.append("# " + column + " (no field of the entity found)\n");
+					mapping.append("column." + (i + 1) + "=\n");
+					this.log.warning("NWCloud-AddOn: No field of " + entity.getSimpleTypeName() + " found for column '" + column + "', it is ignored.");
+				}
+			}
+			this.writeTextFile(fileMapping, null, mapping.toString(), "Mapping of the columns of '" + csv.getName() + "' to the fields of " + entity.getSimpleTypeName());
+			this.log.info("NWCloud-AddOn: " + mapped + " of " + columns.size() + " columns mapped to fields of " + entity.getSimpleTypeName() + ".");
+		}
+
+		// 2. Importer
+		this.copyTemplateToProject(Path.SRC_TEST_JAVA, "NWCloudCsvReader", "Streaming reader of CSV files");
+		String importerClass = this.copyTemplateToProject(Path.SRC_TEST_JAVA, CSV_IMPORTER_NAME, "Batched import of CSV files into entities");
+
+		// 3. Run the import (the arguments of Maven are separated by blanks)
+		String root = this.getPOM().getRoot() + File.separatorChar;
+		String mappingArgument = fileMapping.startsWith(root) ? fileMapping.substring(root.length()).replace(File.separatorChar, '/') : fileMapping;
+		String goals = "test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=" + importerClass + " -Dexec.args=" + mappingArgument;
+		if (run && !mappingArgument.matches(".*\\s.*")) {
+			this.executeMaven(goals, false);
+		} else {
+			this.log.info("NWCloud-AddOn: Run the import with 'mvn " + goals + "'.");
+		}
+
+	}
+
+	/**
+	 * @return True if the generated importer can convert CSV values to the passed type
+	 */
+	private boolean isImportableType(JavaType type, Set<JavaType> entities) {
+
+		if (IMPORTABLE_TYPES.contains(type.getFullyQualifiedTypeName()) || entities.contains(type)) {
+			return true;
+		}
+		ClassOrInterfaceTypeDetails details = typeLocationService.getTypeDetails(type);
+		return (details!=null) && (details.getPhysicalTypeCategory()==PhysicalTypeCategory.ENUMERATION);
+
+	}
+
+	/**
+	 * Map the columns of a CSV file to the fields of an entity by their names, ignoring case, blanks, "_" and "-"
+	 * (e.g. the column "First Name" is mapped to the field "firstName", "first_name" as well).
+	 * 
+	 * @param columns List of String of column names
+	 * @param fields List of String of field names
+	 * @return List of String of the field name of each column, null for columns without field
+	 */
+	static List<String> mapColumnsToFields(List<String> columns, List<String> fields) {
+
+		Map<String, String> normalizedFields = new LinkedHashMap<String, String>();
+		for (String field : fields) {
+			normalizedFields.put(normalizeColumnName(field), field);
+		}
+		List<String> result = new ArrayList<String>();
+		for (String column : columns) {
+			result.add(normalizedFields.get(normalizeColumnName(column)));
+		}
+		return result;
+
+	}
+
+	/**
+	 * @return String of column or field name in lower case, without blanks, "_" and "-" (e.g. "First Name" becomes "firstname")
+	 */
+	private static String normalizeColumnName(String name) {
+		return name.replaceAll("[\\s_-]", "").toLowerCase();
+	}
+
+	/**
+	 * Read the names of the columns from the header line of a CSV file (quoted names may contain the separator).
+	 * 
+	 * @param csv File of CSV file (UTF-8)
+	 * @param separator char of column separator
+	 * @return List of String of column names (empty if the file is empty)
+	 */
+	private List<String> readCsvHeader(File csv, char separator) {
+
+		String header = null;
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(csv), "UTF-8"));
+			header = reader.readLine();
+		} catch (IOException e) {
+			throw new IllegalStateException("NWCloud-AddOn: Could not read '" + csv.getPath() + "'.", e);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+
+		return (header!=null) ? parseCsvHeader(header, separator) : new ArrayList<String>();
+
+	}
+
+	/**
+	 * Split the header line of a CSV file into the names of the columns. Quoted names may contain the separator
+	 * and doubled quotes; a byte order mark is skipped.
+	 * 
+	 * @param header String of first line of CSV file
+	 * @param separator char of column separator
+	 * @return List of String of column names
+	 */
+	static List<String> parseCsvHeader(String header, char separator) {
+
+		List<String> result = new ArrayList<String>();
+		String line = header.startsWith("\uFEFF") ? header.substring(1) : header;
+		StringBuilder column = new StringBuilder();
+		boolean quoted = false;
+		for (int i=0; i<line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted && (c=='"') && (i+1<line.length()) && (line.charAt(i+1)=='"')) {
+				column.append(c);
+				i++;
+			} else if (c=='"') {
+				quoted = !quoted;
+			} else if ((c==separator) && !quoted) {
+				result.add(column.toString());
+				column.setLength(0);
+			} else {
+				column.append(c);
+			}
+		}
+		result.add(column.toString());
+		return result;
+
+	}
+
+	/**
+	 * @return String of the passed value escaped for a properties file (backslashes and tabulators)
+	 */
+	private String escapePropertyValue(String value) {
+		return value.replace("\\", "\\\\").replace("\t", "\\t");
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud enable-finder-cache
+	// --------------------------------------------------------------------------------
+
+	private static final String FINDER_CACHE_NAME = "NWCloudFinderCache";
+	private static final String FINDER_CACHE_BEAN_ID = "nwcloudFinderCache";
+	private static final String EHCACHE_CONFIG = "ehcache.xml";
+	private static final String EHCACHE_VERSION = "2.5.2";
+
+	/**
+	 * Static finders generated by Roo in the ITDs of the entities (e.g. "findPerson", "findAllPeople", "findPersonEntries"
+	 * and "countPeople"). Dynamic finders return a "TypedQuery", which can't be cached. The finder of a single entity by
+	 * its id ("findPerson") is never cached, see addCacheableFinders().
+	 */
+	private static final Pattern ROO_STATIC_FINDERS = Pattern.compile("(?m)^\\s*public\\s+static\\s+(?!TypedQuery\\b)[\\w<>]+\\s+(?:\\w+\\.)?((?:find|count)\\w*)\\s*\\(");
+
+	/**
+	 * This returns true if the command "nwcloud enable-finder-cache" of our addon should be available to the user.
+	 * We check if the project has JPA entities and a Spring application context.
+	 * 
+	 * @return True if command can be used (project with JPA entities), false otherwise
+	 */
+	public boolean nwcloudEnableFinderCacheIsAvailable() {
+
+		boolean result = false;
+
+		if ((this.getPOM()!=null) && fileManager.exists(this.getPathResolved(Path.SPRING_CONFIG_ROOT, "applicationContext.xml"))) {
+			result = !typeLocationService.findTypesWithAnnotation(ROO_JPA_ACTIVE_RECORD, ROO_JPA_ENTITY).isEmpty();
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * This is the command "nwcloud enable-finder-cache". It caches the results of the static finders generated by
+	 * Roo for the selected entities (e.g. reference data read on most requests) in memory:
+	 * 1.) The finders ("findAll[Entities]", "find[Entity]Entries" and "count[Entities]") are pushed in from the ITDs
+	 *     to the Java classes of the entities and annotated with "@Cacheable([Entity])".
+	 * 2.) Each entity gets a cache in "ehcache.xml" holding at most "maxEntries" results for at most "timeToLive"
+	 *     seconds. Existing caches are left unchanged.
+	 * 3.) An Ehcache cache manager of the Spring cache abstraction is added to "applicationContext.xml", and the
+	 *     generated aspect "NWCloudFinderCache" caches the static finders (which the cache aspect of Spring doesn't
+	 *     handle) and clears the cache of an entity when one is persisted, merged or removed. The statistics of the
+	 *     caches (e.g. their hit ratio) are registered via JMX.
+	 * The command can be run again to cache the finders of more entities.
+	 * 
+	 * @param entities String of comma separated simple names of the entities (all entities if null)
+	 * @param maxEntries Maximum count of finder results cached per entity
+	 * @param timeToLive Seconds a finder result is cached at most
+	 */
+	public void nwcloudEnableFinderCache(String entities, int maxEntries, int timeToLive) {
+
+		if ((maxEntries<1) || (timeToLive<1)) {
+			this.log.warning("NWCloud-AddOn: The maximum count of entries and the time to live have to be at least 1.");
+			return;
+		}
+		String fileSpringConf = this.getPathResolved(Path.SPRING_CONFIG_ROOT, "applicationContext.xml");
+		Document document = this.readXmlFile(fileSpringConf);
+		Element root = document.getDocumentElement();
+		boolean configured = XmlUtils.findFirstElement("/beans/bean[@id='" + FINDER_CACHE_BEAN_ID + "']", root)!=null;
+		if (!configured && (XmlUtils.findFirstElement("/beans/bean[@id='cacheManager']", root)!=null)) {
+			this.log.warning("NWCloud-AddOn: The project declares a bean 'cacheManager' already, so caching is left unchanged.");
+			return;
+		}
+		if (!this.isSpringVersionAtLeast(3, 1)) {
+			this.log.warning("NWCloud-AddOn: The Spring cache abstraction needs Spring 3.1 or later, please upgrade 'spring.version' in 'pom.xml'.");
+			return;
+		}
+
+		// 1. Push in and annotate the finders of the selected entities
+		Set<String> selected = null;
+		if ((entities!=null) && (entities.trim().length()>0)) {
+			selected = new LinkedHashSet<String>();
+			for (String entity : entities.split(",")) {
+				if (entity.trim().length()>0) {
+					selected.add(entity.trim());
+				}
+			}
+		}
+		Set<String> cacheNames = new TreeSet<String>();
+		for (JavaType entity : typeLocationService.findTypesWithAnnotation(ROO_JPA_ACTIVE_RECORD, ROO_JPA_ENTITY)) {
+			if ((selected!=null) && !selected.remove(entity.getSimpleTypeName())) {
+				continue;
+			}
+			if (this.addCacheableFinders(entity)) {
+				cacheNames.add(entity.getSimpleTypeName());
+			}
+		}
+		if ((selected!=null) && !selected.isEmpty()) {
+			this.log.warning("NWCloud-AddOn: No JPA entities found named " + selected + ".");
+		}
+		if (cacheNames.isEmpty()) {
+			this.log.warning("NWCloud-AddOn: No finders generated by Roo found to cache.");
+			return;
+		}
+
+		// 2. Ehcache and its configuration
+		List<Dependency> dependencies = new ArrayList<Dependency>();
+		dependencies.add(new Dependency("net.sf.ehcache", "ehcache-core", EHCACHE_VERSION));
+		dependencies.add(new Dependency("org.springframework", "spring-context-support", "${spring.version}"));
+		projectOperations.addDependencies(projectOperations.getFocusedModuleName(), dependencies);
+
+		String fileEhcache = this.getPathResolved(Path.SPRING_CONFIG_ROOT, EHCACHE_CONFIG);
+		if (!fileManager.exists(fileEhcache)) {
+			StringBuilder ehcache = new StringBuilder();
+			ehcache.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+			ehcache.append("<ehcache xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:noNamespaceSchemaLocation=\"http://ehcache.org/ehcache.xsd\" name=\"nwcloud\" updateCheck=\"false\">\n");
+			ehcache.append("    <defaultCache eternal=\"false\" maxEntriesLocalHeap=\"" + maxEntries + "\" overflowToDisk=\"false\" statistics=\"true\" timeToLiveSeconds=\"" + timeToLive + "\"/>\n");
+			ehcache.append("</ehcache>\n");
+			this.writeTextFile(fileEhcache, null, ehcache.toString(), "Ehcache configuration");
+		}
+		Document ehcacheDocument = this.readXmlFile(fileEhcache);
+		Element ehcacheRoot = ehcacheDocument.getDocumentElement();
+		List<String> newCaches = new ArrayList<String>();
+		for (String cacheName : cacheNames) {
+			if (XmlUtils.findFirstElement("/ehcache/cache[@name='" + cacheName + "']", ehcacheRoot)==null) {
+				Element cache = this.createChildElement(ehcacheDocument, ehcacheRoot, "cache", null);
+				cache.setAttribute("name", cacheName);
+				cache.setAttribute("eternal", "false");
+				cache.setAttribute("maxEntriesLocalHeap", String.valueOf(maxEntries));
+				cache.setAttribute("memoryStoreEvictionPolicy", "LRU");
+				cache.setAttribute("overflowToDisk", "false");
+				cache.setAttribute("statistics", "true");
+				cache.setAttribute("timeToLiveSeconds", String.valueOf(timeToLive));
+				newCaches.add(cacheName);
+			}
+		}
+		if (!newCaches.isEmpty()) {
+			this.writeXmlFile(fileEhcache, ehcacheDocument, "Added caches " + newCaches);
+		}
+
+		// 3. Enable caching in "applicationContext.xml"
+		String aspectClass = this.copyTemplateToProject(FINDER_CACHE_NAME, "Aspect caching static finders of entities");
+		if (!configured) {
+			// No "cache:annotation-driven": the cache aspect of Spring only matches methods of objects, while all
+			// cached finders are static and cached by the aspect "NWCloudFinderCache" configured below
+			Element ehCacheManager = this.createChildElement(document, root, "bean", null);
+			ehCacheManager.setAttribute("id", "ehCacheManager");
+			ehCacheManager.setAttribute("class", "org.springframework.cache.ehcache.EhCacheManagerFactoryBean");
+			Element property = this.createChildElement(document, ehCacheManager, "property", null);
+			property.setAttribute("name", "configLocation");
+			property.setAttribute("value", "classpath:META-INF/spring/" + EHCACHE_CONFIG);
+
+			Element cacheManager = this.createChildElement(document, root, "bean", null);
+			cacheManager.setAttribute("id", "cacheManager");
+			cacheManager.setAttribute("class", "org.springframework.cache.ehcache.EhCacheCacheManager");
+			property = this.createChildElement(document, cacheManager, "property", null);
+			property.setAttribute("name", "cacheManager");
+			property.setAttribute("ref", "ehCacheManager");
+
+			Element aspect = this.createChildElement(document, root, "bean", null);
+			aspect.setAttribute("id", FINDER_CACHE_BEAN_ID);
+			aspect.setAttribute("class", aspectClass);
+			aspect.setAttribute("factory-method", "aspectOf");
+			property = this.createChildElement(document, aspect, "property", null);
+			property.setAttribute("name", "cacheManager");
+			property.setAttribute("ref", "cacheManager");
+
+			// Statistics of the caches via JMX ("net.sf.ehcache:type=CacheStatistics,CacheManager=nwcloud,name=[Entity]")
+			Element statistics = this.createChildElement(document, root, "bean", null);
+			statistics.setAttribute("id", "nwcloudCacheStatistics");
+			statistics.setAttribute("class", "net.sf.ehcache.management.ManagementService");
+			statistics.setAttribute("init-method", "init");
+			statistics.setAttribute("destroy-method", "dispose");
+			Element argument = this.createChildElement(document, statistics, "constructor-arg", null);
+			argument.setAttribute("ref", "ehCacheManager");
+			argument = this.createChildElement(document, statistics, "constructor-arg", null);
+			Element mBeanServer = this.createChildElement(document, argument, "bean", null);
+			mBeanServer.setAttribute("class", "org.springframework.jmx.support.MBeanServerFactoryBean");
+			property = this.createChildElement(document, mBeanServer, "property", null);
+			property.setAttribute("name", "locateExistingServerIfPossible");
+			property.setAttribute("value", "true");
+			// Register neither the cache manager, the caches nor their configurations, but their statistics
+			for (String register : new String[] { "false", "false", "false", "true" }) {
+				argument = this.createChildElement(document, statistics, "constructor-arg", null);
+				argument.setAttribute("value", register);
+			}
+
+			this.writeXmlFile(fileSpringConf, document, "Enabled caching of finders with Ehcache");
+		}
+
+		this.log.info("NWCloud-AddOn: The hit ratio of the finder caches is available via JMX as attribute 'CacheHitPercentage' of 'net.sf.ehcache:type=CacheStatistics,CacheManager=nwcloud,name=[Entity]'.");
+
+	}
+
+	/**
+	 * Push in the static finders of an entity from its ITD generated by Roo (if they are not declared in the Java
+	 * class of the entity yet) and annotate them with "@Cacheable", using the simple name of the entity as cache name.
+	 * The finder of a single entity by its id ("find[Entity]") is left out (and its annotation removed if it was added
+	 * before): "remove()" generated by Roo uses it to get the entity managed by the current transaction, so it must
+	 * never return an instance shared with other transactions.
+	 * 
+	 * @param entity JavaType of entity
+	 * @return True if the entity has cacheable finders (annotated now or before), false otherwise
+	 */
+	private boolean addCacheableFinders(JavaType entity) {
+
+		ClassOrInterfaceTypeDetails details = typeLocationService.getTypeDetails(entity);
+		String file = (details!=null) ? typeLocationService.getPhysicalTypeCanonicalPath(details.getDeclaredByMetadataId()) : null;
+		if ((file==null) || !fileManager.exists(file)) {
+			this.log.warning("NWCloud-AddOn: Source of entity '" + entity.getFullyQualifiedTypeName() + "' not found.");
+			return false;
+		}
+		String base = file.substring(0, file.length() - ".java".length());
+		JavaSource itd = null;
+		for (String candidate : new String[] { base + "_Roo_Jpa_ActiveRecord.aj", base + "_Roo_Entity.aj" }) {
+			if ((itd==null) && fileManager.exists(candidate)) {
+				itd = new JavaSource(this.readTextFile(candidate));
+			}
+		}
+		String content = this.readTextFile(file);
+		JavaSource source = new JavaSource(content);
+		List<String> changes = this.addCacheableFinders(source, itd, entity.getSimpleTypeName());
+		if (!changes.isEmpty()) {
+			this.writeTextFile(file, content, source.getContent(), "Cached finders " + changes);
+		}
+		return source.getContent().contains("@Cacheable(\"" + entity.getSimpleTypeName() + "\")");
+
+	}
+
+	/**
+	 * Annotate the static finders of an entity with "@Cacheable" in its Java class, pushing them in from the ITD
+	 * first if they are not declared in the class (see addCacheableFinders(JavaType)).
+	 * 
+	 * @param source JavaSource of Java class of entity, which is changed
+	 * @param itd JavaSource of ITD generated by Roo with the finders, may be null
+	 * @param entityName String of simple name of entity
+	 * @return List of String of the names of the finders annotated, and of those whose annotation was removed (prefixed with "-")
+	 */
+	List<String> addCacheableFinders(JavaSource source, JavaSource itd, String entityName) {
+
+		Set<String> names = new LinkedHashSet<String>();
+		for (JavaSource candidate : new JavaSource[] { source, itd }) {
+			Matcher matcher = (candidate!=null) ? ROO_STATIC_FINDERS.matcher(candidate.getContent()) : null;
+			while ((matcher!=null) && matcher.find()) {
+				names.add(matcher.group(1));
+			}
+		}
+
+		String annotation = "@Cacheable(\"" + entityName + "\")";
+		String findById = "find" + entityName;
+		List<String> changes = new ArrayList<String>();
+		for (String name : names) {
+			List<JavaSource.MethodDeclaration> methods = source.findMethods(name);
+			if (name.equals(findById)) {
+				for (int i=methods.size()-1; i>=0; i--) {
+					JavaSource.MethodDeclaration method = methods.get(i);
+					int start = source.getDeclarationStart(method);
+					int index = source.getContent().substring(start, method.lineStart).indexOf(annotation);
+					if (index>=0) {
+						int lineStart = source.getContent().lastIndexOf('\n', start + index) + 1;
+						source.replace(lineStart, source.getContent().indexOf('\n', start + index) + 1, "");
+						changes.add("-" + name);
+					}
+				}
+			} else if (!methods.isEmpty()) {
+				// Annotate the finders declared in the entity already (from the last one, so the positions of the others stay valid)
+				for (int i=methods.size()-1; i>=0; i--) {
+					JavaSource.MethodDeclaration method = methods.get(i);
+					String declaration = source.getDeclaration(method);
+					if (!declaration.contains("@Cacheable") && ROO_STATIC_FINDERS.matcher(declaration).find()) {
+						int start = source.getDeclarationStart(method);
+						source.replace(start, start, method.indent + annotation + "\n");
+						changes.add(name);
+					}
+				}
+			} else if (itd!=null) {
+				for (JavaSource.MethodDeclaration method : itd.findMethods(name)) {
+					this.pushIn(source, itd, method.indent + annotation + "\n" + itd.getDeclaration(method).replace(method.name + "(", name + "("));
+					changes.add(name);
+				}
+			}
+		}
+
+		if (!changes.isEmpty()) {
+			source.addImport("org.springframework.cache.annotation.Cacheable");
+		}
+		return changes;
+
+	}
+
+	/**
+	 * @return True if the property "spring.version" in "pom.xml" is at least the passed version (or can't be parsed)
+	 */
+	private boolean isSpringVersionAtLeast(int major, int minor) {
+
+		Document pom = this.readXmlFile(this.getPOM().getPath());
+		Element springVersion = XmlUtils.findFirstElement("/project/properties/spring.version", pom.getDocumentElement());
+		if (springVersion==null) {
+			return true;
+		}
+		String[] parts = springVersion.getTextContent().trim().split("\\.");
+		try {
+			int versionMajor = Integer.parseInt(parts[0]);
+			int versionMinor = (parts.length>1) ? Integer.parseInt(parts[1]) : 0;
+			return (versionMajor>major) || ((versionMajor==major) && (versionMinor>=minor));
+		} catch (NumberFormatException e) {
+			return true;
+		}
+
+	}
+
+	// --------------------------------------------------------------------------------
+	// Command: nwcloud addon-debug
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * This is the command "nwcloud addon-debug". It will just dump some debug output to the
+	 * console, which could be useful during debugging of the addon. (Just for testing.)
+	 */
+/*
+	public void nwcloudAddonDebug() {
+
+		System.out.println("Dumping out found POMs ('pom.xml' files):");
+		
+		// Dump POMs
+		System.out.println(" - projectOperations.getPoms()");
+		java.util.Collection<org.springframework.roo.project.maven.Pom> modPoms = projectOperations.getPoms();
+		for (org.springframework.roo.project.maven.Pom modPom : modPoms) {
+			System.out.println("    - modPom.getModuleName():  '"+ modPom.getModuleName()  +"'");
+			System.out.println("    - modPom.getGroupId():     '"+ modPom.getGroupId()     +"'");
+			System.out.println("    - modPom.getArtifactId():  '"+ modPom.getArtifactId()  +"'");
+			System.out.println("    - modPom.getDisplayName(): '"+ modPom.getDisplayName() +"'");
+			System.out.println("    - modPom.getRoot():        '"+ modPom.getRoot()        +"'");
+			System.out.println("    - modPom.getPath():        '"+ modPom.getPath()        +"'");
+		}
+
+		// Dump what we think is the actual pom.xml of the project
+		System.out.println("We think current root POM is:");
+		System.out.println(" - getPOM().getPath(): " + (this.getPOM()!=null?"'"+this.getPOM().getPath()+"'":"null") );
+
+		// Dump where we assume "src/main/resources/META-INF/persistence.xml" to be
+		System.out.println("The 'persistence.xml' file configuring JPA persistency should be here:");
+		System.out.println(" - getPathResolved(Path.SRC_MAIN_RESOURCES, \"META-INF\"+File.separatorChar+\"persistence.xml\"): '" + this.getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF"+File.separatorChar+"persistence.xml") + "'");
+
+		// Dump if "src/main/resources/META-INF/persistence.xml" exists
+		System.out.println(" - Does '" + this.getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF"+File.separatorChar+"persistence.xml") + "' exist? " + fileManager.exists(this.getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF"+File.separatorChar+"persistence.xml")));
+
+		// Test logger output
+		System.out.println("Testing logger output with different levels:");
+		log.severe (" - Testing logging with level severe.");  // Output on console is red
+		log.warning(" - Testing logging with level warning."); // Output on console is purple
+		log.info   (" - Testing logging with level info.");    // Output on console is green
+		log.fine   (" - Testing logging with level fine.");    // Not shown in standard mode
+		log.finer  (" - Testing logging with level finer.");   // Not shown in standard mode
+		log.finest (" - Testing logging with level finest.");  // Not shown in standard mode
+
+		// Example output:
+		//	Dumping out found POMs ('pom.xml' files):
+		//	 - projectOperations.getPoms()
+		//	    - modPom.getModuleName():  ''
+		//	    - modPom.getGroupId():     'com.sap.research'
+		//	    - modPom.getArtifactId():  'voting'
+		//	    - modPom.getDisplayName(): 'voting'
+		//	    - modPom.getRoot():        'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\'
+		//	    - modPom.getPath():        'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\pom.xml'
+		//	We think current root POM is:
+		//	 - getPOM().getPath(): 'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\pom.xml'
+		//	The 'persistence.xml' file configuring JPA persistency should be here:
+		//	 - getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF"+File.separatorChar+"persistence.xml"): 'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\src\main\resources\META-INF\persistence.xml'
+		//	 - Does 'C:\Daten\Dev\Java\EclipseWorkspace-STS-29\tmp\src\main\resources\META-INF\persistence.xml' exist? true
+		//	Testing logger output with different levels:
+		//	 - Testing logging with level severe.
+		//	 - Testing logging with level warning.
+		//	 - Testing logging with level info.
+		
+	}
+*/
+
+	// --------------------------------------------------------------------------------
+	// Utility functions
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Get the Pom object of the "pom.xml" of the current project.
+	 * Return null if there is none. If there is at least one POM, return the first.
+	 * The full qualified path to the "pom.xml" is available by calling getPath() on Pom object.
+	 */
+	protected Pom getPOM() {
+		
+		Pom currentPOM = null;
+		
+		// Get all POMs of the current project 
+		Collection<Pom> poms = projectOperations.getPoms();
+		
+		// If there is at least 1 POM in the collection, we return the first in there.
+		if (poms!=null) {
+			if (!poms.isEmpty()) {
+				currentPOM = poms.iterator().next();
+				if (poms.size()>1) {
+					log.warning("NWCloud-AddOn: There is more than one pom.xml in the project. Just took the first.");
+				}
+			}
+		}
+
+		return currentPOM;
+		
+	}
+
+	/**
+	 * Get the full qualified name of a file or directory, which is placed in the given
+	 * relative location under the project root dir. This is a convenience method that
+	 * is equal to getPathResolved(Path.ROOT, String relativeLocation).
+	 * 
+	 * @param String relative location under project root (directory or file)
+	 * @return String project root + relative location
+	 */
+	public String getPathResolved(String relativeLocation) {
+
+		return getPathResolved(Path.ROOT, relativeLocation);
+
+	}
+
+	/**
+	 * Get the full qualified name of a file or directory, which is placed in a special
+	 * folder under the project root (e.g. in Path.SRC_MAIN_JAVA) and from there in
+	 * the given relative location. So the overall filename will be assembled like:
+	 * project root + special path + relative location
+	 * 
+	 * @param Path specialPath See constants defined in org.springframework.roo.project.Path
+	 * @param String relative location under special path (directory or file)
+	 * @return String project root + special path + relative location
+	 */
+	public String getPathResolved(Path specialPath, String relativeLocation) {
+		
+		Path sp = specialPath!=null ? specialPath : Path.ROOT;
+		String rl = relativeLocation!=null ? relativeLocation : "";
+		
+		return pathResolver.getIdentifier(LogicalPath.getInstance(sp, ""), rl);
+
+	}
+
+	/**
+	 * @return String of full qualified name of "src/main/webapp/WEB-INF/web.xml"
+	 */
+	private String getWebXmlPath() {
+
+		return this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF" + File.separatorChar + "web.xml");
+
+	}
+
+	/**
+	 * @return String of full qualified name of the Spring MVC config "src/main/webapp/WEB-INF/spring/webmvc-config.xml"
+	 */
+	private String getWebMvcConfigPath() {
+
+		return this.getPathResolved(Path.SRC_MAIN_WEBAPP, "WEB-INF" + File.separatorChar + "spring" + File.separatorChar + "webmvc-config.xml");
+
+	}
+
+	/**
+	 * Read the XML file "file" of the project. The content read is stored with the document as its version,
+	 * which is checked before the document is written (see writeXmlFile()).
+	 * 
+	 * @param file String of full qualified name of the XML file
+	 * @return Document of the XML file
+	 */
+	Document readXmlFile(String file) {
+
+		byte[] content = this.readFile(file);
+		Document document = XmlUtils.readXml(new ByteArrayInputStream(content));
+		document.setUserData(FILE_VERSION, content, null);
+		return document;
+
+	}
+
+	/**
+	 * Write the passed document to the XML file "file" of the project (if its content has changed). If the
+	 * document was read with readXmlFile(), the file must not have been changed since (e.g. by another command
+	 * or by Roo itself), otherwise an exception is thrown instead of overwriting these changes.
+	 * 
+	 * @param file String of full qualified name of the XML file
+	 * @param document Document to write
+	 * @param desc String of description of change
+	 */
+	void writeXmlFile(String file, Document document, String desc) {
+
+		synchronized (this.getFileLock(file)) {
+			Object version = document.getUserData(FILE_VERSION);
+			if ((version instanceof byte[]) && !Arrays.equals((byte[]) version, fileManager.exists(file) ? this.readFile(file) : null)) {
+				throw this.concurrentChange(file);
+			}
+			fileManager.createOrUpdateTextFileIfRequired(file, XmlUtils.nodeToString(document), desc, true);
+			// Further changes of the document are written on top of the version just written
+			document.setUserData(FILE_VERSION, this.readFile(file), null);
+		}
+
+	}
+
+	/**
+	 * Write "content" to the text file "file" of the project (if it has changed). If "version" is passed, the
+	 * file must still have this content, otherwise an exception is thrown instead of overwriting the changes
+	 * made since it was read (see writeXmlFile()).
+	 * 
+	 * @param file String of full qualified name of the file
+	 * @param version String of content of the file read with readTextFile() before, or null to write it regardless of its content
+	 * @param content String of new content of the file
+	 * @param desc String of description of change
+	 */
+	void writeTextFile(String file, String version, String content, String desc) {
+
+		synchronized (this.getFileLock(file)) {
+			if ((version!=null) && !version.equals(fileManager.exists(file) ? this.readTextFile(file) : null)) {
+				throw this.concurrentChange(file);
+			}
+			fileManager.createOrUpdateTextFileIfRequired(file, content, desc, true);
+		}
+
+	}
+
+	/**
+	 * Read the file "file" of the project, while holding its lock (so it isn't read while the addon writes it).
+	 * 
+	 * @param file String of full qualified name of the file
+	 * @return byte[] of content of the file
+	 */
+	private byte[] readFile(String file) {
+
+		synchronized (this.getFileLock(file)) {
+			java.io.InputStream inputStream = null;
+			try {
+				inputStream = fileManager.getInputStream(file);
+				return IOUtils.toByteArray(inputStream);
+			} catch (IOException e) {
+				throw new IllegalStateException("NWCloud-AddOn: Could not read '" + file + "'.", e);
+			} finally {
+				IOUtils.closeQuietly(inputStream);
+			}
+		}
+
+	}
+
+	/**
+	 * Get the lock of the file "file" of the project. Files are distributed to FILE_LOCK_STRIPES locks by their
+	 * canonical names, so changes of different files (e.g. in different modules) don't wait for each other.
+	 * The lock of a file is never held while the lock of another file is acquired, so there are no deadlocks.
+	 * 
+	 * @param file String of full qualified name of the file
+	 * @return Object to synchronize on
+	 */
+	private Object getFileLock(String file) {
+
+		String path;
+		try {
+			path = new File(file).getCanonicalPath();
+		} catch (IOException e) {
+			path = new File(file).getAbsolutePath();
+		}
+		return fileLocks[(path.hashCode() & Integer.MAX_VALUE) % fileLocks.length];
+
+	}
+
+	/**
+	 * @return IllegalStateException reporting that "file" was changed while a command was changing it, too
+	 */
+	private IllegalStateException concurrentChange(String file) {
+
+		return new IllegalStateException("NWCloud-AddOn: '" + file + "' has been changed while the command was running. The changes of the command are rolled back, please run it again.");
+
+	}
+
+	/**
+	 * @return String of full qualified name of "src/main/resources/META-INF/persistence.xml"
+	 */
+	private String getPersistenceXmlPath() {
+
+		return this.getPathResolved(Path.SRC_MAIN_RESOURCES, "META-INF" + File.separatorChar + "persistence.xml");
+
+	}
+
+	/**
+	 * Set (or remove, if "value" is null) a property of all persistence units in "persistence.xml".
+	 * 
+	 * @param name String of property name (e.g. "eclipselink.profiler")
+	 * @param value String of property value (null to remove the property)
+	 * @param desc String of description of change
+	 * @return True if "persistence.xml" with at least one persistence unit exists, false otherwise
+	 */
+	private boolean setPersistenceUnitProperty(String name, String value, String desc) {
+
+		String filePersistenceXml = this.getPersistenceXmlPath();
+		if (!fileManager.exists(filePersistenceXml)) {
+			return false;
+		}
+
+		Document document = this.readXmlFile(filePersistenceXml);
+		List<Element> persistenceUnits = XmlUtils.findElements("/persistence/persistence-unit", document.getDocumentElement());
+		for (Element persistenceUnit : persistenceUnits) {
+			Element properties = XmlUtils.findFirstElement("properties", persistenceUnit);
+			Element property = (properties!=null) ? XmlUtils.findFirstElement("property[@name='" + name + "']", properties) : null;
+			if (value==null) {
+				if (property!=null) {
+					properties.removeChild(property);
+					DomUtils.removeTextNodes(properties);
+				}
+			} else {
+				if (properties==null) {
+					properties = this.createChildElement(document, persistenceUnit, "properties", null);
+				}
+				if (property==null) {
+					property = this.createChildElement(document, properties, "property", null);
+					property.setAttribute("name", name);
+				}
+				property.setAttribute("value", value);
+			}
+		}
+		this.writeXmlFile(filePersistenceXml, document, desc);
+
+		return !persistenceUnits.isEmpty();
+
+	}
+
+	/**
+	 * Order of the top level elements of "web.xml" as defined by the Servlet specification. New elements
+	 * are inserted according to this order (see insertWebXmlElement(...)).
+	 */
+	private static final List<String> WEB_XML_ELEMENT_ORDER = Arrays.asList(
+			"description", "display-name", "icon", "distributable", "context-param", "filter", "filter-mapping",
+			"listener", "servlet", "servlet-mapping", "session-config", "mime-mapping", "welcome-file-list",
+			"error-page", "jsp-config", "security-constraint", "login-config", "security-role", "env-entry",
+			"ejb-ref", "ejb-local-ref", "service-ref", "resource-ref", "resource-env-ref", "message-destination-ref",
+			"persistence-context-ref", "persistence-unit-ref", "post-construct", "pre-destroy",
+			"message-destination", "locale-encoding-mapping-list");
+
+	/**
+	 * Insert the passed element into the root element of "web.xml" after all elements of the same kind
+	 * and in front of the first element that has to follow it according to WEB_XML_ELEMENT_ORDER.
+	 * So e.g. a new filter mapping is added behind all existing filter mappings and thus will be the last
+	 * one in the filter chain.
+	 * 
+	 * @param root Element "web-app" of "web.xml"
+	 * @param element Element to insert
+	 */
+	private void insertWebXmlElement(Element root, Element element) {
+
+		int order = WEB_XML_ELEMENT_ORDER.indexOf(element.getLocalName()!=null ? element.getLocalName() : element.getNodeName());
+		NodeList children = root.getChildNodes();
+		for (int i=0; i<children.getLength(); i++) {
+			Node child = children.item(i);
+			if (child.getNodeType()==Node.ELEMENT_NODE) {
+				int childOrder = WEB_XML_ELEMENT_ORDER.indexOf(child.getLocalName()!=null ? child.getLocalName() : child.getNodeName());
+				if ((order>=0) && (childOrder>order)) {
+					root.insertBefore(element, child);
+					return;
+				}
+			}
+		}
+		root.appendChild(element);
+
+	}
+
+	/**
+	 * Create a new element in the namespace of the root element of the passed document
+	 * (e.g. "http://java.sun.com/xml/ns/javaee" for "web.xml").
+	 * 
+	 * @param parent Element to append the new element to (not appended, if null)
+	 * @param name String of element name
+	 * @param text String of text content of the new element (may be null)
+	 * @return Element created
+	 */
+	private Element createChildElement(Document document, Element parent, String name, String text) {
+
+		Element element = document.createElementNS(document.getDocumentElement().getNamespaceURI(), name);
+		if (text!=null) {
+			element.appendChild(document.createTextNode(text));
+		}
+		if (parent!=null) {
+			parent.appendChild(element);
+		}
+		return element;
+
+	}
+
+	/**
+	 * Register a filter in "web.xml" (if no filter with the same name exists yet), and map it either to
+	 * the passed URL pattern or to the passed servlet name.
+	 * 
+	 * @param root Element "web-app" of "web.xml"
+	 * @param filterName String of filter name
+	 * @param filterClass String of full qualified filter class name
+	 * @param initParams Map of init parameters of the filter (may be null)
+	 * @param urlPattern String of URL pattern to map the filter to (may be null)
+	 * @param servletName String of servlet name to map the filter to (may be null)
+	 */
+	private void addWebXmlFilter(Element root, String filterName, String filterClass, Map<String, String> initParams, String urlPattern, String servletName) {
+
+		if (XmlUtils.findFirstElement("/web-app/filter[filter-name='" + filterName + "']", root)!=null) {
+			return;
+		}
+
+		Document document = root.getOwnerDocument();
+		Element filter = this.createChildElement(document, null, "filter", null);
+		this.createChildElement(document, filter, "filter-name", filterName);
+		this.createChildElement(document, filter, "filter-class", filterClass);
+		if (initParams!=null) {
+			for (Map.Entry<String, String> initParam : initParams.entrySet()) {
+				Element initParamElement = this.createChildElement(document, filter, "init-param", null);
+				this.createChildElement(document, initParamElement, "param-name", initParam.getKey());
+				this.createChildElement(document, initParamElement, "param-value", initParam.getValue());
+			}
+		}
+		this.insertWebXmlElement(root, filter);
+
+		Element filterMapping = this.createChildElement(document, null, "filter-mapping", null);
+		this.createChildElement(document, filterMapping, "filter-name", filterName);
+		if (urlPattern!=null) {
+			this.createChildElement(document, filterMapping, "url-pattern", urlPattern);
+		}
+		if (servletName!=null) {
+			this.createChildElement(document, filterMapping, "servlet-name", servletName);
+		}
+		this.insertWebXmlElement(root, filterMapping);
+
+	}
+
+	/**
+	 * Remove the filter with the passed name and all its mappings from "web.xml".
+	 * 
+	 * @param root Element "web-app" of "web.xml"
+	 * @param filterName String of filter name
+	 */
+	private void removeWebXmlFilter(Element root, String filterName) {
+
+		this.removeElements(root, "/web-app/filter[filter-name='" + filterName + "']");
+		this.removeElements(root, "/web-app/filter-mapping[filter-name='" + filterName + "']");
+
+	}
+
+	/**
+	 * Set the init parameters of a filter (or servlet) in "web.xml". Existing parameters are changed,
+	 * missing ones are added, all others are kept.
+	 * 
+	 * @param element Element "filter" (or "servlet") of "web.xml"
+	 * @param initParams Map of parameter names and values
+	 */
+	private void setWebXmlInitParams(Element element, Map<String, String> initParams) {
+
+		Document document = element.getOwnerDocument();
+		for (Map.Entry<String, String> initParam : initParams.entrySet()) {
+			Element paramValue = XmlUtils.findFirstElement("init-param[param-name='" + initParam.getKey() + "']/param-value", element);
+			if (paramValue!=null) {
+				paramValue.setTextContent(initParam.getValue());
+			} else {
+				Element initParamElement = this.createChildElement(document, element, "init-param", null);
+				this.createChildElement(document, initParamElement, "param-name", initParam.getKey());
+				this.createChildElement(document, initParamElement, "param-value", initParam.getValue());
+			}
+		}
+
+	}
+
+	/**
+	 * Register a listener in "web.xml" (if it is not registered yet).
+	 * 
+	 * @param root Element "web-app" of "web.xml"
+	 * @param listenerClass String of full qualified listener class name
+	 */
+	private void addWebXmlListener(Element root, String listenerClass) {
+
+		if (XmlUtils.findFirstElement("/web-app/listener[listener-class='" + listenerClass + "']", root)!=null) {
+			return;
+		}
+
+		Document document = root.getOwnerDocument();
+		Element listener = this.createChildElement(document, null, "listener", null);
+		this.createChildElement(document, listener, "listener-class", listenerClass);
+		this.insertWebXmlElement(root, listener);
+
+	}
+
+	/**
+	 * Remove the listener with the passed class name from "web.xml".
+	 * 
+	 * @param root Element "web-app" of "web.xml"
+	 * @param listenerClass String of full qualified listener class name
+	 */
+	private void removeWebXmlListener(Element root, String listenerClass) {
+
+		this.removeElements(root, "/web-app/listener[listener-class='" + listenerClass + "']");
+
+	}
+
+	/**
+	 * Remove all elements matching the passed XPath expression.
+	 * 
+	 * @return True if at least one element was removed, false otherwise
+	 */
+	private boolean removeElements(Element root, String xPath) {
+
+		boolean result = false;
+		for (Element element : XmlUtils.findElements(xPath, root)) {
+			Node parent = element.getParentNode();
+			parent.removeChild(element);
+			DomUtils.removeTextNodes(parent);
+			result = true;
+		}
+		return result;
+
+	}
+
+	/**
+	 * @return String of name of the Spring DispatcherServlet defined in "web.xml", or null if there is none
+	 */
+	private String getDispatcherServletName(Element root) {
+
+		for (Element servlet : XmlUtils.findElements("/web-app/servlet", root)) {
+			Element servletClass = XmlUtils.findFirstElement("servlet-class", servlet);
+			if ((servletClass!=null) && servletClass.getTextContent().trim().equals("org.springframework.web.servlet.DispatcherServlet")) {
+				return XmlUtils.findFirstElement("servlet-name", servlet).getTextContent().trim();
+			}
+		}
+		return null;
+
+	}
+
+	/**
+	 * Get the package the addon generates its support classes in. This is the sub package
+	 * "nwcloud" of the top level package of the project (e.g. "com.example.myapp.nwcloud").
+	 * 
+	 * @return String of full qualified package name
+	 */
+	private String getProjectSupportPackage() {
+
+		return projectOperations.getFocusedTopLevelPackage().getFullyQualifiedPackageName() + ".nwcloud";
+
+	}
+
+	/**
+	 * Get the source file of a support class generated by the addon (see getProjectSupportPackage()).
+	 * 
+	 * @param className String of simple class name
+	 * @return String of full qualified file name in "src/main/java"
+	 */
+	private String getProjectClassPath(String className) {
+
+		return this.getProjectClassPath(Path.SRC_MAIN_JAVA, className);
+
+	}
+
+	/**
+	 * Get the source file of a support class generated by the addon in a source folder of the project.
+	 * 
+	 * @param path Path of source folder (e.g. "src/test/java")
+	 * @param className String of simple class name
+	 * @return String of full qualified file name
+	 */
+	private String getProjectClassPath(Path path, String className) {
+
+		return this.getPathResolved(path, this.getProjectSupportPackage().replace('.', File.separatorChar) + File.separatorChar + className + ".java");
+
+	}
+
+	/**
+	 * Generate a support class in the project from the template "[className].java-template" in the resources
+	 * of this addon. The placeholder "__TOP_LEVEL_PACKAGE__" in the template is replaced by the top level
+	 * package of the project. An existing class is overwritten.
+	 * 
+	 * @param className String of simple class name
+	 * @param desc String of description of change
+	 * @return String of full qualified class name generated
+	 */
+	private String copyTemplateToProject(String className, String desc) {
+
+		return this.copyTemplateToProject(Path.SRC_MAIN_JAVA, className, desc);
+
+	}
+
+	/**
+	 * Generate a support class in a source folder of the project (see copyTemplateToProject(String, String)).
+	 * 
+	 * @param path Path of source folder (e.g. "src/test/java" for tools not deployed with the application)
+	 * @param className String of simple class name
+	 * @param desc String of description of change
+	 * @return String of full qualified class name generated
+	 */
+	private String copyTemplateToProject(Path path, String className, String desc) {
+
+		String content = this.getTemplate(className + ".java-template").replace("__TOP_LEVEL_PACKAGE__", projectOperations.getFocusedTopLevelPackage().getFullyQualifiedPackageName());
+		this.writeTextFile(this.getProjectClassPath(path, className), null, content, desc);
+		return this.getProjectSupportPackage() + "." + className;
+
+	}
+
+	/**
+	 * Delete a support class generated by the addon from the project (if it exists).
+	 * 
+	 * @param className String of simple class name
+	 * @param desc String of description of change
+	 */
+	private void deleteProjectClass(String className, String desc) {
+
+		this.deleteProjectClass(Path.SRC_MAIN_JAVA, className, desc);
+
+	}
+
+	/**
+	 * Delete a support class generated by the addon from a source folder of the project (if it exists).
+	 * 
+	 * @param path Path of source folder (e.g. "src/test/java")
+	 * @param className String of simple class name
+	 * @param desc String of description of change
+	 */
+	private void deleteProjectClass(Path path, String className, String desc) {
+
+		if (fileManager.exists(this.getProjectClassPath(path, className))) {
+			fileManager.delete(this.getProjectClassPath(path, className), desc);
+		}
+
+	}
+
+	/**
+	 * Read the file with name "fileName" from the resources of this addon.
+	 * 
+	 * @param fileName String of the name of the file in the addon resources
+	 * @return String of content of the file
+	 */
+	private String getTemplate(String fileName) {
+
+		java.io.InputStream inputStream = null;
+		try {
+			inputStream = FileUtils.getInputStream(this.getClass(), fileName);
+			return IOUtils.toString(inputStream, "UTF-8");
+		} catch (IOException e) {
+			throw new IllegalStateException("NWCloud-AddOn: Could not read '"+fileName+"' from addon resources.", e);
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+
+	}
+
+	/**
+	 * Set the passed properties in the properties file "file". Lines defining one of the
+	 * properties (also if commented out, like "#severity=debug") are replaced by the new
+	 * definition, so comments and order of the file are kept. Properties not yet defined
+	 * in the file are appended.
+	 * 
+	 * @param file String of full qualified name of the properties file
+	 * @param properties Map of property names and values to set
+	 * @param desc String of description of change
+	 */
+	void updatePropertiesFile(String file, Map<String, String> properties, String desc) {
+
+		// The file is read and written while holding its lock, so the changes can't interleave with others
+		synchronized (this.getFileLock(file)) {
+
+			String content = "";
+			try {
+				content = new String(this.readFile(file), "ISO-8859-1");
+			} catch (IOException e) {
+				throw new IllegalStateException("NWCloud-AddOn: Could not read '"+file+"'.", e);
+			}
+
+			Set<String> pending = new LinkedHashSet<String>(properties.keySet());
+			StringBuilder result = new StringBuilder();
+			for (String line : content.split("\r?\n", -1)) {
+				String trimmed = line.trim();
+				String key = null;
+				if (trimmed.matches("#?\\s*[\\w.-]+\\s*[=:].*")) {
+					key = trimmed.replaceFirst("^#?\\s*([\\w.-]+)\\s*[=:].*$", "$1");
+				}
+				if ((key!=null) && pending.remove(key)) {
+					result.append(key).append('=').append(properties.get(key)).append('\n');
+				} else if ((key==null) || !properties.containsKey(key) || trimmed.startsWith("#")) {
+					// Keep all other lines (and further commented definitions of already replaced properties)
+					result.append(line).append('\n');
+				}
+			}
+			// Remove the line break added after the last line of the original content
+			result.setLength(result.length() - 1);
+			for (String key : pending) {
+				result.append('\n').append(key).append('=').append(properties.get(key));
+			}
+
+			fileManager.createOrUpdateTextFileIfRequired(file, result.toString(), desc, true);
+
+		}
+
+	}
+
+	/**
+	 * Copy the file with name "fileName" from the resources of this addon
+	 * to the path "path" of the Roo project. The string "desc" will be
+	 * shown as additional description of the file operation on Roo shell.
+	 * If "desc" is null or an empty string, the description will be omitted.
+	 *  
+	 * @param path String of path where to copy the file in the Roo project
+	 * @param fileName String of the name of the file from addon resources that should be copied 
+	 * @param desc String of description of change (will be omitted if null or empty)
+	 */
+	private void copyFileFromAddonToProject(String path, String fileName, String desc) {
+		
+		if ((path!=null) && (fileName!=null)) {
+
+			String targetFile = path + File.separatorChar + fileName;
+			synchronized (this.getFileLock(targetFile)) {
+
+				// Use MutableFile in combination with FileManager to take advantage of Roo's
+				// transactional file handling which offers automatic rollback if an exception occurs
+				MutableFile mutableFile = fileManager.exists(targetFile) ? fileManager.updateFile(targetFile) : fileManager.createFile(targetFile);
+				if (desc!=null) {
+					if (!desc.trim().isEmpty()) {
 						mutableFile.setDescriptionOfChange(desc);
 					}
 				}
+
+				java.io.InputStream inputStream = null;
+				java.io.OutputStream outputStream = null;
+				try {
+					inputStream = FileUtils.getInputStream(this.getClass(), fileName);
+					outputStream = mutableFile.getOutputStream();
+					IOUtils.copy(inputStream, outputStream);
+				} catch (Exception e) {
+					throw new IllegalStateException("NWCloud-AddOn: Could not copy '"+fileName+"' from addon resources to '"+path+"'.",e);
+				} finally {
+					IOUtils.closeQuietly(inputStream);
+					IOUtils.closeQuietly(outputStream);
+				}
+
+			}
+
+		} else {
+			this.log.warning("NWCloud-AddOn: A file should be copyied from the addon resources to a ceratain path. But passed filename and/or path were null.");
+		}
+
+	}
+
+	/**
+	 * Copy file "sourceFile" to file "targetFile" within the Roo project.
+	 * The string "desc" will be shown as additional description of
+	 * the file operation on Roo shell. If "desc" is null or an empty
+	 * string, the description will be omitted.
+	 * 
+	 * @param sourceFile String of full qualified name of the file to copy
+	 * @param targetFile String of full qualified filename that the "fromFile" should be copied to 
+	 * @param desc String of description of change (will be omitted if null or empty)
+	 */
+	private void copyFileWithinProject(String sourceFile, String targetFile, String desc) {
+		
+		if ((sourceFile!=null) && (targetFile!=null)) {
+
+			if(fileManager.exists(sourceFile)) {
 				
-	            java.io.InputStream inputStream = null;
-	            java.io.OutputStream outputStream = null;
-	            try {
-	                inputStream = fileManager.getInputStream(sourceFile);
-	                outputStream = mutableFile.getOutputStream();
-	                IOUtils.copy(inputStream, outputStream);
-	            } catch (Exception e) {
-	                throw new IllegalStateException("NWCloud-AddOn: Could not copy file '"+sourceFile+"' to '"+targetFile+"'.",e);
-	            } finally {
-	                IOUtils.closeQuietly(inputStream);
-	                IOUtils.closeQuietly(outputStream);
-	            }
+				// Read the source first, so the locks of both files are never held at the same time
+				byte[] content = this.readFile(sourceFile);
+				synchronized (this.getFileLock(targetFile)) {
+
+					// Use MutableFile in combination with FileManager to take advantage of Roo's
+					// transactional file handling which offers automatic rollback if an exception occurs
+					MutableFile mutableFile = fileManager.exists(targetFile) ? fileManager.updateFile(targetFile) : fileManager.createFile(targetFile);
+					if (desc!=null) {
+						if (!desc.trim().isEmpty()) {
+							mutableFile.setDescriptionOfChange(desc);
+						}
+					}
+
+					java.io.OutputStream outputStream = null;
+					try {
+						outputStream = mutableFile.getOutputStream();
+						IOUtils.write(content, outputStream);
+					} catch (Exception e) {
+						throw new IllegalStateException("NWCloud-AddOn: Could not copy file '"+sourceFile+"' to '"+targetFile+"'.",e);
+					} finally {
+						IOUtils.closeQuietly(outputStream);
+					}
+
+				}
 
 			} else {
 				this.log.warning("NWCloud-AddOn: A file should be copyied within the project, but the passed passed source file does not exist: '"+sourceFile+"'");
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2012 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sap.research.roo.addon.nwcloud;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Roo Addon for SAP HANA Cloud - WAR Analyzer
+ * -------------------------------------------
+ *
+ * Helper used by the command "nwcloud analyze-war" to inspect a packaged WAR file. It collects
+ * the size of every jar embedded in "WEB-INF/lib", the classes that are contained in more than
+ * one jar (or in a jar and in "WEB-INF/classes"), and the jars that are never referenced by the
+ * application.
+ *
+ * A jar counts as referenced if one of its classes is referenced from the bytecode in
+ * "WEB-INF/classes" (constant pool of the class files), from a textual resource of the web app
+ * (e.g. Spring XML configs, properties, JSPX views and tags) or from another jar that is itself
+ * referenced. Taglib URIs used in the views are matched against the TLDs of the jars. All this is
+ * a heuristic: classes only loaded reflectively by names assembled at runtime are not detected,
+ * so the result is a list of candidates that should be reviewed before excluding them.
+ *
+ * @see NWCloudOperationsImpl
+ */
+class WarAnalyzer {
+
+	/**
+	 * Pattern matching class names in internal form within descriptors and signatures (e.g. "Ljava/lang/String;")
+	 */
+	private static final Pattern DESCRIPTOR_PATTERN = Pattern.compile("L([\\w$/]+)[;<]");
+
+	/**
+	 * Pattern matching fully qualified class names in text resources (e.g. "org.springframework.web.servlet.DispatcherServlet")
+	 */
+	private static final Pattern CLASS_NAME_PATTERN = Pattern.compile("[a-zA-Z_$][\\w$]*(?:\\.[a-zA-Z_$][\\w$]*)+");
+
+	/**
+	 * Pattern matching the URI declared in a tag library descriptor
+	 */
+	private static final Pattern TLD_URI_PATTERN = Pattern.compile("<uri>\\s*([^<\\s]+)\\s*</uri>");
+
+	/**
+	 * Pattern used as fallback to derive the artifactId from a jar file name (e.g. "spring-core-3.1.0.RELEASE.jar")
+	 */
+	private static final Pattern JAR_NAME_PATTERN = Pattern.compile("^(.+?)-\\d.*\\.jar$");
+
+	private static final String LIB_DIR = "WEB-INF/lib/";
+	private static final String CLASSES_DIR = "WEB-INF/classes/";
+
+	/**
+	 * The result of the analysis for a single jar embedded in "WEB-INF/lib".
+	 */
+	static class JarInfo {
+		String name;
+		String groupId;
+		String artifactId;
+		long compressedSize;
+		long size;
+		boolean referenced;
+		Set<String> classes = new HashSet<String>();
+		Set<String> references = new HashSet<String>();
+		Set<String> taglibUris = new HashSet<String>();
+	}
+
+	private final File war;
+	private final List<JarInfo> jars = new ArrayList<JarInfo>();
+	private final Set<String> applicationClasses = new HashSet<String>();
+	private final Set<String> applicationReferences = new HashSet<String>();
+	private final StringBuilder applicationText = new StringBuilder();
+	private final Map<String, List<String>> duplicateClasses = new TreeMap<String, List<String>>();
+	private long warSize;
+
+	WarAnalyzer(File war) {
+		this.war = war;
+	}
+
+	/**
+	 * Read the whole WAR once, collect the jars with their classes and references, and
+	 * compute duplicates and referenced jars afterwards.
+	 *
+	 * @throws IOException if the WAR or one of the embedded jars could not be read
+	 */
+	void analyze() throws IOException {
+
+		this.warSize = this.war.length();
+
+		ZipFile zipFile = new ZipFile(this.war);
+		try {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory()) {
+					continue;
+				}
+				String name = entry.getName();
+				if (name.startsWith(LIB_DIR) && name.endsWith(".jar") && name.indexOf('/', LIB_DIR.length())<0) {
+					InputStream in = zipFile.getInputStream(entry);
+					try {
+						this.jars.add(this.readJar(name.substring(LIB_DIR.length()), entry, in));
+					} finally {
+						IOUtils.closeQuietly(in);
+					}
+				} else if (name.startsWith(CLASSES_DIR) && name.endsWith(".class")) {
+					InputStream in = zipFile.getInputStream(entry);
+					try {
+						this.applicationClasses.add(toClassName(name.substring(CLASSES_DIR.length())));
+						this.applicationReferences.addAll(readClassReferences(in));
+					} finally {
+						IOUtils.closeQuietly(in);
+					}
+				} else if (isTextResource(name)) {
+					InputStream in = zipFile.getInputStream(entry);
+					try {
+						this.applicationText.append(IOUtils.toString(in, "UTF-8")).append('\n');
+					} finally {
+						IOUtils.closeQuietly(in);
+					}
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+
+		Matcher matcher = CLASS_NAME_PATTERN.matcher(this.applicationText);
+		while (matcher.find()) {
+			this.applicationReferences.add(matcher.group());
+		}
+
+		this.computeDuplicates();
+		this.computeReferencedJars();
+
+	}
+
+	/**
+	 * Read a jar embedded in the WAR from the passed stream (without extracting it).
+	 */
+	private JarInfo readJar(String name, ZipEntry warEntry, InputStream in) throws IOException {
+
+		JarInfo jar = new JarInfo();
+		jar.name = name;
+		jar.compressedSize = warEntry.getCompressedSize();
+		jar.size = warEntry.getSize();
+
+		StringBuilder text = new StringBuilder();
+		ZipInputStream jarIn = new ZipInputStream(in);
+		ZipEntry entry;
+		while ((entry = jarIn.getNextEntry())!=null) {
+			String entryName = entry.getName();
+			if (entry.isDirectory()) {
+				continue;
+			}
+			if (entryName.endsWith(".class")) {
+				jar.classes.add(toClassName(entryName));
+				jar.references.addAll(readClassReferences(jarIn));
+			} else if (entryName.startsWith("META-INF/maven/") && entryName.endsWith("/pom.properties")) {
+				Properties pomProperties = new Properties();
+				pomProperties.load(jarIn);
+				// A jar might include the POM properties of shaded artifacts, the first one wins
+				if (jar.artifactId==null) {
+					jar.artifactId = pomProperties.getProperty("artifactId");
+					jar.groupId = pomProperties.getProperty("groupId");
+				}
+			} else if (entryName.startsWith("META-INF/") && entryName.endsWith(".tld")) {
+				Matcher matcher = TLD_URI_PATTERN.matcher(IOUtils.toString(jarIn, "UTF-8"));
+				while (matcher.find()) {
+					jar.taglibUris.add(matcher.group(1));
+				}
+			} else if (entryName.startsWith("META-INF/services/") || entryName.equals("META-INF/spring.handlers")) {
+				text.append(IOUtils.toString(jarIn, "UTF-8")).append('\n');
+			}
+		}
+
+		Matcher matcher = CLASS_NAME_PATTERN.matcher(text);
+		while (matcher.find()) {
+			jar.references.add(matcher.group());
+		}
+		jar.references.removeAll(jar.classes);
+
+		if (jar.artifactId==null) {
+			Matcher nameMatcher = JAR_NAME_PATTERN.matcher(name);
+			jar.artifactId = nameMatcher.matches() ? nameMatcher.group(1) : name.substring(0, name.length() - ".jar".length());
+		}
+
+		return jar;
+
+	}
+
+	/**
+	 * Find all classes contained in more than one place.
+	 */
+	private void computeDuplicates() {
+
+		Map<String, List<String>> locations = new HashMap<String, List<String>>();
+		for (String className : this.applicationClasses) {
+			List<String> where = new ArrayList<String>(2);
+			where.add(CLASSES_DIR);
+			locations.put(className, where);
+		}
+		for (JarInfo jar : this.jars) {
+			for (String className : jar.classes) {
+				List<String> where = locations.get(className);
+				if (where==null) {
+					where = new ArrayList<String>(2);
+					locations.put(className, where);
+				}
+				where.add(jar.name);
+			}
+		}
+		for (Map.Entry<String, List<String>> location : locations.entrySet()) {
+			if (location.getValue().size()>1) {
+				this.duplicateClasses.put(location.getKey(), location.getValue());
+			}
+		}
+
+	}
+
+	/**
+	 * Mark all jars reachable from the application classes and resources as referenced.
+	 */
+	private void computeReferencedJars() {
+
+		Map<String, JarInfo> jarByClass = new HashMap<String, JarInfo>();
+		for (JarInfo jar : this.jars) {
+			for (String className : jar.classes) {
+				if (!jarByClass.containsKey(className)) {
+					jarByClass.put(className, jar);
+				}
+			}
+		}
+
+		LinkedList<JarInfo> queue = new LinkedList<JarInfo>();
+		for (JarInfo jar : this.jars) {
+			for (String uri : jar.taglibUris) {
+				if (this.applicationText.indexOf(uri)>=0) {
+					jar.referenced = true;
+					queue.add(jar);
+					break;
+				}
+			}
+		}
+		markReferenced(this.applicationReferences, jarByClass, queue);
+
+		while (!queue.isEmpty()) {
+			markReferenced(queue.removeFirst().references, jarByClass, queue);
+		}
+
+	}
+
+	private static void markReferenced(Set<String> references, Map<String, JarInfo> jarByClass, List<JarInfo> queue) {
+		for (String reference : references) {
+			JarInfo jar = jarByClass.get(reference);
+			if ((jar!=null) && !jar.referenced) {
+				jar.referenced = true;
+				queue.add(jar);
+			}
+		}
+	}
+
+	// --------------------------------------------------------------------------------
+	// Results
+	// --------------------------------------------------------------------------------
+
+	long getWarSize() {
+		return this.warSize;
+	}
+
+	/**
+	 * @return List of jars in "WEB-INF/lib", largest first
+	 */
+	List<JarInfo> getJarsBySize() {
+		List<JarInfo> result = new ArrayList<JarInfo>(this.jars);
+		Collections.sort(result, new Comparator<JarInfo>() {
+			public int compare(JarInfo a, JarInfo b) {
+				return a.compressedSize<b.compressedSize ? 1 : (a.compressedSize==b.compressedSize ? 0 : -1);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return List of jars in "WEB-INF/lib" that are never referenced by the application
+	 */
+	List<JarInfo> getUnreferencedJars() {
+		List<JarInfo> result = new ArrayList<JarInfo>();
+		for (JarInfo jar : this.getJarsBySize()) {
+			if (!jar.referenced) {
+				result.add(jar);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return Map of class name to the locations (jar names or "WEB-INF/classes/") containing it
+	 */
+	Map<String, List<String>> getDuplicateClasses() {
+		return this.duplicateClasses;
+	}
+
+	/**
+	 * @return Map of the locations sharing duplicate classes (e.g. "a.jar, b.jar") to the number of shared classes
+	 */
+	Map<String, Integer> getDuplicateClassesByLocations() {
+		Map<String, Integer> result = new TreeMap<String, Integer>();
+		for (List<String> where : this.duplicateClasses.values()) {
+			StringBuilder key = new StringBuilder();
+			for (String location : where) {
+				if (key.length()>0) {
+					key.append(", ");
+				}
+				key.append(location);
+			}
+			Integer count = result.get(key.toString());
+			result.put(key.toString(), count==null ? 1 : count + 1);
+		}
+		return result;
+	}
+
+	// --------------------------------------------------------------------------------
+	// Class file parsing
+	// --------------------------------------------------------------------------------
+
+	/**
+	 * Read the constant pool of the class file in the passed stream and return the names of
+	 * all classes referenced by it (class entries as well as types used in descriptors,
+	 * signatures and annotations). The stream is not closed.
+	 */
+	static Set<String> readClassReferences(InputStream in) throws IOException {
+
+		Set<String> result = new HashSet<String>();
+		DataInputStream data = new DataInputStream(in);
+
+		if (data.readInt()!=0xCAFEBABE) {
+			return result;
+		}
+		data.readUnsignedShort(); // minor version
+		data.readUnsignedShort(); // major version
+
+		int count = data.readUnsignedShort();
+		String[] utf8 = new String[count];
+		int[] classIndexes = new int[count];
+		int classCount = 0;
+		for (int i=1; i<count; i++) {
+			int tag = data.readUnsignedByte();
+			switch (tag) {
+				case 1:  utf8[i] = data.readUTF(); break;                 // Utf8
+				case 7:  classIndexes[classCount++] = data.readUnsignedShort(); break; // Class
+				case 8:                                                   // String
+				case 16:                                                  // MethodType
+				case 19:                                                  // Module
+				case 20: data.skipBytes(2); break;                        // Package
+				case 15: data.skipBytes(3); break;                        // MethodHandle
+				case 3:                                                   // Integer
+				case 4:                                                   // Float
+				case 9:                                                   // Fieldref
+				case 10:                                                  // Methodref
+				case 11:                                                  // InterfaceMethodref
+				case 12:                                                  // NameAndType
+				case 17:                                                  // Dynamic
+				case 18: data.skipBytes(4); break;                        // InvokeDynamic
+				case 5:                                                   // Long
+				case 6:  data.skipBytes(8); i++; break;                   // Double (takes two slots)
+				default: return result;                                   // Unknown constant, give up on this class
+			}
+		}
+
+		for (int i=0; i<classCount; i++) {
+			String name = utf8[classIndexes[i]];
+			if ((name!=null) && !name.startsWith("[")) {
+				result.add(name.replace('/', '.'));
+			}
+		}
+		for (String value : utf8) {
+			if ((value!=null) && (value.indexOf(';')>0)) {
+				Matcher matcher = DESCRIPTOR_PATTERN.matcher(value);
+				while (matcher.find()) {
+					result.add(matcher.group(1).replace('/', '.'));
+				}
+			}
+		}
+
+		return result;
+
+	}
+
+	private static String toClassName(String classFileName) {
+		return classFileName.substring(0, classFileName.length() - ".class".length()).replace('/', '.');
+	}
+
+	private static boolean isTextResource(String name) {
+		return name.endsWith(".xml") || name.endsWith(".properties") || name.endsWith(".jsp") || name.endsWith(".jspx")
+			|| name.endsWith(".tagx") || name.endsWith(".tag") || name.endsWith(".tld");
+	}
+
+	/**
+	 * Format a number of bytes in a human readable way (e.g. "1.5 MB").
+	 */
+	static String formatSize(long bytes) {
+		if (bytes<1024) {
+			return bytes + " B";
+		} else if (bytes<1024*1024) {
+			return String.format("%.1f KB", bytes / 1024.0);
+		}
+		return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sap.research.roo.addon.nwcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the textual editing of Java classes and AspectJ ITDs by {@link JavaSource}.
+ */
+public class JavaSourceTest {
+
+	private static final String CONTROLLER =
+		"package com.example.web;\n" +
+		"\n" +
+		"import java.util.List;\n" +
+		"import org.springframework.http.ResponseEntity;\n" +
+		"\n" +
+		"@RooWebJson(jsonObject = Person.class)\n" +
+		"public class PersonController {\n" +
+		"\n" +
+		"    /*\n" +
+		"    public String listJson() { is only a comment\n" +
+		"    */\n" +
+		"    private static final String TEMPLATE = \"String listJson() {\";\n" +
+		"\n" +
+		"    @RequestMapping(value = \"/{id}\", headers = \"Accept=application/json\")\n" +
+		"    @ResponseBody\n" +
+		"    public ResponseEntity<List<Person>> listJson(@RequestParam(value = \"page\", required = false) Integer page, Map<String, List<Long>> filter) throws IOException {\n" +
+		"        String brackets = \"}{)(\" + '}' + '\\'';\n" +
+		"        /* } */\n" +
+		"        return listJson(page, null);\n" +
+		"    }\n" +
+		"\n" +
+		"    public String showJson(@PathVariable(\"id\") Long id) {\n" +
+		"        return Person.findPerson(id).toJson();\n" +
+		"    }\n" +
+		"\n" +
+		"    public abstract String listJson(Integer page);\n" +
+		"\n" +
+		"}\n";
+
+	private static final String ITD =
+		"privileged aspect PersonController_Roo_Controller_Json {\n" +
+		"\n" +
+		"    @RequestMapping(headers = \"Accept=application/json\")\n" +
+		"    public ResponseEntity<String> PersonController.listJson() {\n" +
+		"        return new ResponseEntity<String>(Person.toJsonArray(Person.findAllPeople()), HttpStatus.OK);\n" +
+		"    }\n" +
+		"\n" +
+		"}\n";
+
+	@Test
+	public void findsMethodsWithGenericReturnTypesOnly() {
+		JavaSource source = new JavaSource(CONTROLLER);
+		List<JavaSource.MethodDeclaration> methods = source.findMethods("listJson");
+
+		// Neither the comment, the string literal, the recursive call nor the abstract method are declarations
+		assertEquals(1, methods.size());
+		JavaSource.MethodDeclaration method = methods.get(0);
+		assertEquals("listJson", method.name);
+		assertEquals("    ", method.indent);
+		assertEquals("ResponseEntity<List<Person>>", source.getReturnType(method));
+		assertEquals('{', CONTROLLER.charAt(method.bodyStart));
+		assertEquals(CONTROLLER.indexOf("    }\n\n    public String showJson") + 4, method.bodyEnd);
+	}
+
+	@Test
+	public void includesAnnotationsWithParenthesesInDeclaration() {
+		JavaSource source = new JavaSource(CONTROLLER);
+		JavaSource.MethodDeclaration method = source.findMethods("listJson").get(0);
+
+		String declaration = source.getDeclaration(method);
+		assertTrue(declaration.startsWith("    @RequestMapping(value = \"/{id}\", headers = \"Accept=application/json\")\n    @ResponseBody\n"));
+		assertTrue(declaration.endsWith("return listJson(page, null);\n    }"));
+		assertTrue(source.getBody(method).contains("/* } */"));
+	}
+
+	@Test
+	public void splitsParametersWithAnnotationsAndGenerics() {
+		JavaSource source = new JavaSource(CONTROLLER);
+
+		List<String> parameters = source.getParameters(source.findMethods("listJson").get(0));
+		assertEquals(Arrays.asList("@RequestParam(value = \"page\", required = false) Integer page", "Map<String, List<Long>> filter"), parameters);
+		assertEquals("page", JavaSource.getParameterName(parameters.get(0)));
+		assertEquals("filter", JavaSource.getParameterName(parameters.get(1)));
+
+		List<String> annotated = source.getParameters(source.findMethods("showJson").get(0));
+		assertEquals(Arrays.asList("@PathVariable(\"id\") Long id"), annotated);
+		assertEquals("id", JavaSource.getParameterName(annotated.get(0)));
+	}
+
+	@Test
+	public void findsMethodsOfAspectJItds() {
+		JavaSource itd = new JavaSource(ITD);
+		List<JavaSource.MethodDeclaration> methods = itd.findMethods("listJson");
+
+		assertEquals(1, methods.size());
+		assertEquals("PersonController.listJson", methods.get(0).name);
+		assertEquals("ResponseEntity<String>", itd.getReturnType(methods.get(0)));
+		assertTrue(itd.getDeclaration(methods.get(0)).startsWith("    @RequestMapping(headers = \"Accept=application/json\")\n"));
+		assertTrue(itd.getParameters(methods.get(0)).isEmpty());
+	}
+
+	@Test
+	public void findsClosingBracketsBehindLiteralsAndComments() {
+		String content = "call(\"(\", ')', /* ) */ nested(a[0]), \"\\\")\") // )\n;";
+		JavaSource source = new JavaSource(content);
+
+		assertEquals(content.indexOf(") //"), source.findClosing(content.indexOf('(')));
+		int index = content.indexOf("a[");
+		assertEquals(index + 3, source.findClosing(index + 1));
+		assertEquals(-1, new JavaSource("{ \"}\" ").findClosing(0));
+	}
+
+	@Test
+	public void addsImportsBehindTheLastImportOnce() {
+		JavaSource source = new JavaSource(CONTROLLER);
+
+		assertTrue(source.addImport("java.util.Map"));
+		assertTrue(source.getContent().contains("import org.springframework.http.ResponseEntity;\nimport java.util.Map;\n"));
+		assertFalse(source.addImport("java.util.Map"));
+		assertFalse(source.addImport("java.util.List"));
+		assertEquals(Arrays.asList("java.util.List", "org.springframework.http.ResponseEntity", "java.util.Map"), source.getImports());
+
+		JavaSource withoutImports = new JavaSource("package com.example;\n\npublic class Example {\n}\n");
+		assertTrue(withoutImports.addImport("java.util.List"));
+		assertEquals("package com.example;\nimport java.util.List;\n\npublic class Example {\n}\n", withoutImports.getContent());
+
+		JavaSource defaultPackage = new JavaSource("public class Example {\n}\n");
+		assertTrue(defaultPackage.addImport("java.util.List"));
+		assertTrue(defaultPackage.getContent().startsWith("import java.util.List;\npublic class Example"));
+	}
+
+}
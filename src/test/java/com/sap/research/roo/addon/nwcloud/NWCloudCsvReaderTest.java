@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sap.research.roo.addon.nwcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the CSV reader generated by "nwcloud import-data" (template "NWCloudCsvReader.java-template", which is
+ * compiled for the tests), and of the mapping of the header line to the fields of the entity by
+ * {@link NWCloudOperationsImpl}.
+ */
+public class NWCloudCsvReaderTest {
+
+	private static final String PACKAGE = "com.example.nwcloud";
+
+	private static Class<?> readerClass;
+
+	@Before
+	public void setUp() throws Exception {
+		if (readerClass==null) {
+			readerClass = compileTemplate("NWCloudCsvReader");
+		}
+	}
+
+	@Test
+	public void readsQuotedFieldsWithSeparatorsAndDoubledQuotes() throws Exception {
+		List<List<String>> records = read("id,name,comment\n1,\"Smith, John\",\"He said \"\"hi\"\"\"\n2,Doe,\"\"\n", ',');
+
+		assertEquals(3, records.size());
+		assertEquals(Arrays.asList("id", "name", "comment"), records.get(0));
+		assertEquals(Arrays.asList("1", "Smith, John", "He said \"hi\""), records.get(1));
+		assertEquals(Arrays.asList("2", "Doe", ""), records.get(2));
+	}
+
+	@Test
+	public void readsLineBreaksInQuotedFields() throws Exception {
+		Object reader = createReader("1;\"first line\r\nsecond line\n\nfourth line\";x\n2;\"\";y", ';');
+
+		assertEquals(Arrays.asList("1", "first line\nsecond line\n\nfourth line", "x"), readRecord(reader));
+		assertEquals(1, getLine(reader));
+		assertEquals(Arrays.asList("2", "", "y"), readRecord(reader));
+		assertEquals(5, getLine(reader));
+		assertEquals(null, readRecord(reader));
+	}
+
+	@Test
+	public void skipsByteOrderMarkAndKeepsEmptyFields() throws Exception {
+		List<List<String>> records = read("\uFEFFa\tb\t\n\t\t\n", '\t');
+
+		assertEquals(Arrays.asList("a", "b", ""), records.get(0));
+		assertEquals(Arrays.asList("", "", ""), records.get(1));
+	}
+
+	@Test
+	public void reportsUnterminatedQuotedField() throws Exception {
+		Object reader = createReader("1,ok\n2,\"open\nstill open", ',');
+		readRecord(reader);
+		try {
+			readRecord(reader);
+			fail("Unterminated quoted field not reported");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("line 2"));
+		}
+	}
+
+	@Test
+	public void parsesHeaderLikeTheReader() {
+		assertEquals(Arrays.asList("id", "Last, First", "Nick \"name\"", ""), NWCloudOperationsImpl.parseCsvHeader("\uFEFFid,\"Last, First\",\"Nick \"\"name\"\"\",", ','));
+		assertEquals(Arrays.asList("a;b"), NWCloudOperationsImpl.parseCsvHeader("a;b", ','));
+	}
+
+	@Test
+	public void mapsColumnsToFieldsIgnoringCaseBlanksUnderscoresAndHyphens() {
+		List<String> fields = Arrays.asList("firstName", "lastName", "birthDate", "id");
+		List<String> columns = Arrays.asList("First Name", "LAST_NAME", "birth-date", "Comment", "ID");
+
+		assertEquals(Arrays.asList("firstName", "lastName", "birthDate", null, "id"), NWCloudOperationsImpl.mapColumnsToFields(columns, fields));
+		assertEquals(new ArrayList<String>(), NWCloudOperationsImpl.mapColumnsToFields(new ArrayList<String>(), fields));
+	}
+
+	private List<List<String>> read(String csv, char separator) throws Exception {
+		Object reader = createReader(csv, separator);
+		List<List<String>> result = new ArrayList<List<String>>();
+		List<String> record;
+		while ((record = readRecord(reader))!=null) {
+			result.add(record);
+		}
+		return result;
+	}
+
+	private Object createReader(String csv, char separator) throws Exception {
+		Constructor<?> constructor = readerClass.getConstructor(Reader.class, char.class);
+		return constructor.newInstance(new StringReader(csv), separator);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> readRecord(Object reader) throws Exception {
+		Method method = readerClass.getMethod("readRecord");
+		try {
+			return (List<String>) method.invoke(reader);
+		} catch (InvocationTargetException e) {
+			throw (Exception) e.getCause();
+		}
+	}
+
+	private int getLine(Object reader) throws Exception {
+		return (Integer) readerClass.getMethod("getLine").invoke(reader);
+	}
+
+	/**
+	 * Compile a template of the addon resources (with the package "com.example.nwcloud") and load the class.
+	 */
+	private static Class<?> compileTemplate(String className) throws IOException, ClassNotFoundException {
+		InputStream in = NWCloudOperationsImpl.class.getResourceAsStream(className + ".java-template");
+		assertNotNull("Template " + className + " not found", in);
+		String source;
+		try {
+			source = IOUtils.toString(in, "UTF-8").replace("__TOP_LEVEL_PACKAGE__", PACKAGE.substring(0, PACKAGE.lastIndexOf('.')));
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assertNotNull("The tests need a JDK to compile the template", compiler);
+
+		File directory = File.createTempFile("nwcloud-template", "");
+		directory.delete();
+		File file = new File(directory, PACKAGE.replace('.', File.separatorChar) + File.separator + className + ".java");
+		FileUtils.writeStringToFile(file, source, "UTF-8");
+		assertEquals("Template " + className + " does not compile", 0, compiler.run(null, null, null, "-encoding", "UTF-8", "-nowarn", file.getPath()));
+		ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, NWCloudCsvReaderTest.class.getClassLoader());
+		Class<?> result = loader.loadClass(PACKAGE + "." + className);
+		FileUtils.deleteQuietly(directory);
+		return result;
+	}
+
+}
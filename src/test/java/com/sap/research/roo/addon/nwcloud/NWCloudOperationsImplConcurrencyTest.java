@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sap.research.roo.addon.nwcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.process.manager.FileManager;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Stress test of the file helpers of {@link NWCloudOperationsImpl} used by commands running concurrently:
+ * read-modify-write cycles of several threads on the same files must neither lose edits nor overwrite
+ * changes made since the file was read. The files are kept in memory by a stub of Roo's FileManager.
+ */
+public class NWCloudOperationsImplConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int CYCLES = 50;
+
+	private static final String TEXT_FILE = new File("project", "log.txt").getAbsolutePath();
+	private static final String XML_FILE = new File("project", "web.xml").getAbsolutePath();
+	private static final String PROPERTIES_FILE = new File("project", "nwcloud.properties").getAbsolutePath();
+
+	/**
+	 * Content of the files, by their names
+	 */
+	private final Map<String, String> files = new ConcurrentHashMap<String, String>();
+
+	private NWCloudOperationsImpl operations;
+
+	@Before
+	public void setUp() throws Exception {
+		operations = new NWCloudOperationsImpl();
+		Field fileManager = NWCloudOperationsImpl.class.getDeclaredField("fileManager");
+		fileManager.setAccessible(true);
+		fileManager.set(operations, this.createFileManager());
+	}
+
+	@Test
+	public void concurrentTextChangesAreNotLost() throws Throwable {
+		files.put(TEXT_FILE, "");
+
+		this.runConcurrently(new Cycle() {
+			public void run(int thread, int cycle) {
+				// Retry the cycle as a user would after a concurrent change was reported
+				while (true) {
+					String version = operations.readTextFile(TEXT_FILE);
+					Thread.yield();
+					try {
+						operations.writeTextFile(TEXT_FILE, version, version + thread + "-" + cycle + "\n", "Append line");
+						return;
+					} catch (IllegalStateException e) {
+						assertTrue(e.getMessage().contains("has been changed while the command was running"));
+					}
+				}
+			}
+		});
+
+		String[] lines = files.get(TEXT_FILE).split("\n");
+		assertEquals(THREADS * CYCLES, lines.length);
+		assertEquals(THREADS * CYCLES, new HashSet<String>(Arrays.asList(lines)).size());
+	}
+
+	@Test
+	public void concurrentXmlChangesAreNotLost() throws Throwable {
+		files.put(XML_FILE, "<web-app></web-app>");
+
+		this.runConcurrently(new Cycle() {
+			public void run(int thread, int cycle) {
+				while (true) {
+					Document document = operations.readXmlFile(XML_FILE);
+					Element filter = document.createElement("filter");
+					filter.setAttribute("name", thread + "-" + cycle);
+					document.getDocumentElement().appendChild(filter);
+					Thread.yield();
+					try {
+						operations.writeXmlFile(XML_FILE, document, "Add filter");
+						return;
+					} catch (IllegalStateException e) {
+						assertTrue(e.getMessage().contains("has been changed while the command was running"));
+					}
+				}
+			}
+		});
+
+		Document document = operations.readXmlFile(XML_FILE);
+		assertEquals(THREADS * CYCLES, document.getElementsByTagName("filter").getLength());
+	}
+
+	@Test
+	public void concurrentPropertyChangesAreNotLost() throws Throwable {
+		files.put(PROPERTIES_FILE, "# Settings\nexisting=1");
+
+		this.runConcurrently(new Cycle() {
+			public void run(int thread, int cycle) {
+				Map<String, String> properties = new LinkedHashMap<String, String>();
+				properties.put("property" + thread + "-" + cycle, String.valueOf(cycle));
+				operations.updatePropertiesFile(PROPERTIES_FILE, properties, "Set property");
+			}
+		});
+
+		String content = files.get(PROPERTIES_FILE);
+		assertTrue(content.startsWith("# Settings\nexisting=1\n"));
+		for (int thread=0; thread<THREADS; thread++) {
+			for (int cycle=0; cycle<CYCLES; cycle++) {
+				assertTrue(content.contains("\nproperty" + thread + "-" + cycle + "=" + cycle));
+			}
+		}
+	}
+
+	@Test
+	public void changeSinceReadingIsReported() {
+		files.put(TEXT_FILE, "read");
+		String version = operations.readTextFile(TEXT_FILE);
+		files.put(TEXT_FILE, "changed by another command");
+		try {
+			operations.writeTextFile(TEXT_FILE, version, "read and changed", "Change");
+			fail("Concurrent change of text file not reported");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains(TEXT_FILE));
+		}
+		assertEquals("changed by another command", files.get(TEXT_FILE));
+
+		files.put(XML_FILE, "<web-app/>");
+		Document document = operations.readXmlFile(XML_FILE);
+		document.getDocumentElement().appendChild(document.createElement("filter"));
+		files.put(XML_FILE, "<web-app><listener/></web-app>");
+		try {
+			operations.writeXmlFile(XML_FILE, document, "Add filter");
+			fail("Concurrent change of XML file not reported");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains(XML_FILE));
+		}
+		assertEquals("<web-app><listener/></web-app>", files.get(XML_FILE));
+	}
+
+	/**
+	 * One read-modify-write cycle of a thread
+	 */
+	private interface Cycle {
+		void run(int thread, int cycle);
+	}
+
+	/**
+	 * Run CYCLES cycles in each of THREADS threads, all starting at the same time, and rethrow the first
+	 * failure of a thread.
+	 */
+	private void runConcurrently(final Cycle cycle) throws Throwable {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i=0; i<THREADS; i++) {
+			final int thread = i;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int j=0; j<CYCLES; j++) {
+							cycle.run(thread, j);
+						}
+					} catch (Throwable e) {
+						synchronized (failures) {
+							failures.add(e);
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(60000);
+			assertTrue("Thread did not finish", !thread.isAlive());
+		}
+		if (!failures.isEmpty()) {
+			throw failures.get(0);
+		}
+	}
+
+	/**
+	 * @return FileManager keeping the files in memory (only the methods used by the file helpers are supported)
+	 */
+	private FileManager createFileManager() {
+		return (FileManager) Proxy.newProxyInstance(FileManager.class.getClassLoader(), new Class<?>[] { FileManager.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws UnsupportedEncodingException {
+				String name = method.getName();
+				if (name.equals("exists")) {
+					return files.containsKey(args[0]);
+				} else if (name.equals("getInputStream")) {
+					String content = files.get(args[0]);
+					if (content==null) {
+						throw new IllegalStateException("No file '" + args[0] + "'");
+					}
+					return new ByteArrayInputStream(content.getBytes("UTF-8"));
+				} else if (name.equals("createOrUpdateTextFileIfRequired")) {
+					Thread.yield();
+					files.put((String) args[0], (String) args[1]);
+					return null;
+				} else if (name.equals("toString")) {
+					return "In-memory FileManager";
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sap.research.roo.addon.nwcloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests of the textual changes of project files made by the commands of {@link NWCloudOperationsImpl}.
+ */
+public class NWCloudOperationsImplTest {
+
+	private static final String ENTITY =
+		"package com.example.domain;\n" +
+		"\n" +
+		"import org.springframework.roo.addon.jpa.activerecord.RooJpaActiveRecord;\n" +
+		"\n" +
+		"@RooJpaActiveRecord\n" +
+		"public class Country {\n" +
+		"\n" +
+		"    private String name;\n" +
+		"}\n";
+
+	private static final String ACTIVE_RECORD_ITD =
+		"package com.example.domain;\n" +
+		"\n" +
+		"import java.util.List;\n" +
+		"import javax.persistence.EntityManager;\n" +
+		"import javax.persistence.PersistenceContext;\n" +
+		"import javax.persistence.TypedQuery;\n" +
+		"\n" +
+		"privileged aspect Country_Roo_Jpa_ActiveRecord {\n" +
+		"    \n" +
+		"    @PersistenceContext\n" +
+		"    transient EntityManager Country.entityManager;\n" +
+		"    \n" +
+		"    public static final EntityManager Country.entityManager() {\n" +
+		"        EntityManager em = new Country().entityManager;\n" +
+		"        if (em == null) throw new IllegalStateException(\"Entity manager has not been injected\");\n" +
+		"        return em;\n" +
+		"    }\n" +
+		"    \n" +
+		"    public static long Country.countCountrys() {\n" +
+		"        return entityManager().createQuery(\"SELECT COUNT(o) FROM Country o\", Long.class).getSingleResult();\n" +
+		"    }\n" +
+		"    \n" +
+		"    public static List<Country> Country.findAllCountrys() {\n" +
+		"        return entityManager().createQuery(\"SELECT o FROM Country o\", Country.class).getResultList();\n" +
+		"    }\n" +
+		"    \n" +
+		"    public static Country Country.findCountry(Long id) {\n" +
+		"        if (id == null) return null;\n" +
+		"        return entityManager().find(Country.class, id);\n" +
+		"    }\n" +
+		"    \n" +
+		"    public static List<Country> Country.findCountryEntries(int firstResult, int maxResults) {\n" +
+		"        return entityManager().createQuery(\"SELECT o FROM Country o\", Country.class).setFirstResult(firstResult).setMaxResults(maxResults).getResultList();\n" +
+		"    }\n" +
+		"    \n" +
+		"    public static TypedQuery<Country> Country.findCountrysByNameEquals(String name) {\n" +
+		"        return entityManager().createQuery(\"SELECT o FROM Country AS o WHERE o.name = :name\", Country.class).setParameter(\"name\", name);\n" +
+		"    }\n" +
+		"    \n" +
+		"}\n";
+
+	@Test
+	public void viewsReadingTheSessionKeepCreatingSessions() {
+		// "login.jspx" generated by Roo for Spring Security reads the last login failure without scope
+		assertTrue(NWCloudOperationsImpl.isViewUsingSession(
+			"<div xmlns:jsp=\"http://java.sun.com/JSP/Page\" version=\"2.0\">\n" +
+			"  <jsp:directive.page contentType=\"text/html;charset=UTF-8\" />\n" +
+			"  <c:if test=\"${not empty param.login_error}\">\n" +
+			"    <c:out value=\"${SPRING_SECURITY_LAST_EXCEPTION.message}\" />\n" +
+			"  </c:if>\n" +
+			"</div>"));
+		assertTrue(NWCloudOperationsImpl.isViewUsingSession("<c:out value=\"${sessionScope.cart.size}\" />"));
+		assertTrue(NWCloudOperationsImpl.isViewUsingSession("<jsp:directive.page session=\"true\" />"));
+		assertTrue(NWCloudOperationsImpl.isViewUsingSession("<c:out value=\"${requestScope['scopedTarget.preferences'].name}\" />"));
+	}
+
+	@Test
+	public void viewsNotReadingTheSessionRenderWithoutSession() {
+		assertFalse(NWCloudOperationsImpl.isViewUsingSession(
+			"<div xmlns:jsp=\"http://java.sun.com/JSP/Page\" version=\"2.0\">\n" +
+			"  <jsp:directive.page contentType=\"text/html;charset=UTF-8\" />\n" +
+			"  <page:list id=\"pl_com_example_domain_Person\" items=\"${people}\" z=\"user-managed\">\n" +
+			"    <table:table data=\"${people}\" id=\"l_com_example_domain_Person\" path=\"/people\" />\n" +
+			"  </page:list>\n" +
+			"</div>"));
+		assertFalse(NWCloudOperationsImpl.isViewUsingSession("<spring:message code=\"security_login_title\" />"));
+	}
+
+	@Test
+	public void pushesInStaticFindersFromTheItdAsCacheable() {
+		JavaSource entity = new JavaSource(ENTITY);
+
+		assertEquals(Arrays.asList("countCountrys", "findAllCountrys", "findCountryEntries"), new NWCloudOperationsImpl().addCacheableFinders(entity, new JavaSource(ACTIVE_RECORD_ITD), "Country"));
+		String content = entity.getContent();
+		assertTrue(content.contains("    @Cacheable(\"Country\")\n    public static long countCountrys() {\n"));
+		assertTrue(content.contains("    @Cacheable(\"Country\")\n    public static List<Country> findAllCountrys() {\n"));
+		assertTrue(content.contains("    @Cacheable(\"Country\")\n    public static List<Country> findCountryEntries(int firstResult, int maxResults) {\n"));
+		assertEquals(3, count(content, "@Cacheable"));
+		// Neither the finder by id, the dynamic finder nor the entity manager are pushed in
+		assertFalse(content.contains("findCountry("));
+		assertFalse(content.contains("findCountrysByNameEquals"));
+		assertFalse(content.contains("EntityManager entityManager()"));
+		assertTrue(entity.getImports().containsAll(Arrays.asList("java.util.List", "org.springframework.cache.annotation.Cacheable")));
+		assertFalse(entity.getImports().contains("javax.persistence.TypedQuery"));
+	}
+
+	@Test
+	public void leavesCacheableFindersUnchangedOnRerun() {
+		JavaSource entity = new JavaSource(ENTITY);
+		NWCloudOperationsImpl operations = new NWCloudOperationsImpl();
+		operations.addCacheableFinders(entity, new JavaSource(ACTIVE_RECORD_ITD), "Country");
+		String content = entity.getContent();
+
+		// Roo removes pushed in methods from the ITD, but the command must not depend on it
+		assertTrue(operations.addCacheableFinders(entity, new JavaSource(ACTIVE_RECORD_ITD), "Country").isEmpty());
+		assertTrue(operations.addCacheableFinders(entity, null, "Country").isEmpty());
+		assertEquals(content, entity.getContent());
+	}
+
+	@Test
+	public void annotatesDeclaredFindersAndRemovesAnnotationOfFinderById() {
+		JavaSource entity = new JavaSource(ENTITY.replace("    private String name;\n",
+			"    private String name;\n" +
+			"\n" +
+			"    @Cacheable(\"Country\")\n" +
+			"    public static Country findCountry(Long id) {\n" +
+			"        return entityManager().find(Country.class, id);\n" +
+			"    }\n" +
+			"\n" +
+			"    public static long countCountrys() {\n" +
+			"        return 0;\n" +
+			"    }\n"));
+
+		assertEquals(Arrays.asList("-findCountry", "countCountrys"), new NWCloudOperationsImpl().addCacheableFinders(entity, null, "Country"));
+		String content = entity.getContent();
+		assertTrue(content.contains("    private String name;\n\n    public static Country findCountry(Long id) {\n"));
+		assertTrue(content.contains("    @Cacheable(\"Country\")\n    public static long countCountrys() {\n"));
+		assertEquals(1, count(content, "@Cacheable("));
+	}
+
+	private static int count(String content, String text) {
+		int result = 0;
+		for (int index = content.indexOf(text); index>=0; index = content.indexOf(text, index + 1)) {
+			result++;
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2012 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sap.research.roo.addon.nwcloud;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import org.apache.commons.io.FileUtils;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+
+/**
+ * Roo Addon for SAP HANA Cloud - Startup Benchmark
+ * ------------------------------------------------
+ *
+ * Measures what the addon adds to the startup of the Roo shell. An OSGi framework (Apache Felix, found via
+ * the FrameworkFactory service of the test class path) is booted with Felix SCR and the bundles of a Roo
+ * installation (the directory "bundle" of the Spring Roo 1.2.1 distribution), without the addon. Then the
+ * addon bundle is installed and started, and its command marker is requested, as the Roo shell does at
+ * boot. Finally the NWCloudOperations are requested, as on the first availability check of an "nwcloud"
+ * command (Tab completion, "help" or running a command). After each step the elapsed time, the heap
+ * retained (after garbage collection) and the count of loaded classes are reported, relative to the
+ * framework without the addon. Each round boots a new framework.
+ *
+ * The bundles have to provide all services the addon references (see REQUIRED_SERVICES); the compile
+ * dependencies of the addon alone (e.g. "target/all") are not enough, so the benchmark stops with a list of
+ * the unresolved bundles and missing services. Run it on Java 6 to 8 like Roo 1.2.1 (Felix 4.0.2 can't start on
+ * later versions without opening the packages "java.lang", "java.net" and "java.security" to it).
+ *
+ * Run with: mvn package test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.sap.research.roo.addon.nwcloud.NWCloudStartupBenchmark
+ *   -Dexec.args="target/com.sap.research.roo.addon.nwcloud-1.0.0.RELEASE.jar [spring-roo-1.2.1.RELEASE]/bundle 5"
+ *
+ * @see NWCloudCommands
+ */
+public class NWCloudStartupBenchmark {
+
+	private static final String COMMAND_MARKER = "org.springframework.roo.shell.CommandMarker";
+	private static final String OPERATIONS = NWCloudOperations.class.getName();
+	private static final String SCR_ACTIVATOR = "org.apache.felix.scr.impl.Activator";
+
+	private static final String[] STEPS = { "Without addon", "Addon started", "Commands activated", "Operations activated" };
+
+	/**
+	 * Roo services referenced by NWCloudOperationsImpl, which can't be activated without them
+	 */
+	private static final String[] REQUIRED_SERVICES = {
+		"org.springframework.roo.project.ProjectOperations",
+		"org.springframework.roo.process.manager.FileManager",
+		"org.springframework.roo.project.PathResolver",
+		"org.springframework.roo.project.MavenOperations",
+		"org.springframework.roo.classpath.TypeLocationService"
+	};
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: NWCloudStartupBenchmark <addon bundle> <directory 'bundle' of the Roo distribution> [rounds, default 5]");
+			return;
+		}
+		File addon = new File(args[0]);
+		int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+		List<File> bundles = getBundles(new File(args[1]));
+
+		System.out.println("Booting " + bundles.size() + " bundles with and without " + addon.getName() + ", " + rounds + " rounds (after one warm-up round)");
+		boot(bundles, addon);
+		long[][] total = new long[STEPS.length][3];
+		for (int round = 0; round < rounds; round++) {
+			long[][] result = boot(bundles, addon);
+			for (int step = 0; step < STEPS.length; step++) {
+				for (int i = 0; i < 3; i++) {
+					total[step][i] += result[step][i];
+				}
+			}
+		}
+		System.out.println(String.format("%-22s %12s %14s %14s", "", "time [ms]", "heap [KB]", "classes"));
+		for (int step = 0; step < STEPS.length; step++) {
+			String prefix = (step == 0) ? "" : "+";
+			System.out.println(String.format("%-22s %12s %14s %14s", STEPS[step],
+				prefix + String.format("%.1f", total[step][0] / (rounds * 1000000.0)),
+				prefix + (total[step][1] / rounds / 1024),
+				prefix + (total[step][2] / rounds)));
+		}
+	}
+
+	/**
+	 * Boot a new framework with the passed bundles, then start the addon and activate its services step by step.
+	 *
+	 * @return long[][] of nanoseconds, bytes of heap retained and classes loaded, for each step (see STEPS):
+	 *   absolute values without the addon, and the increase caused by each further step
+	 */
+	private static long[][] boot(List<File> bundles, File addon) throws Exception {
+		File storage = File.createTempFile("nwcloud-startup", "");
+		storage.delete();
+		Map<String, String> config = new HashMap<String, String>();
+		config.put(Constants.FRAMEWORK_STORAGE, storage.getAbsolutePath());
+		config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+		Framework framework = getFrameworkFactory().newFramework(config);
+		long[][] result = new long[STEPS.length][];
+		try {
+			long start = System.nanoTime();
+			framework.start();
+			BundleContext context = framework.getBundleContext();
+			List<Bundle> installed = new ArrayList<Bundle>();
+			for (File bundle : bundles) {
+				installed.add(context.installBundle(bundle.toURI().toString()));
+			}
+			for (Bundle bundle : installed) {
+				start(bundle);
+			}
+			result[0] = measure(start);
+			checkDependencies(context);
+
+			start = System.nanoTime();
+			Bundle addonBundle = context.installBundle(addon.toURI().toString());
+			addonBundle.start();
+			result[1] = measure(start);
+
+			start = System.nanoTime();
+			getService(addonBundle, COMMAND_MARKER);
+			result[2] = measure(start);
+
+			start = System.nanoTime();
+			getService(addonBundle, OPERATIONS);
+			result[3] = measure(start);
+		} finally {
+			framework.stop();
+			framework.waitForStop(30000);
+			FileUtils.deleteQuietly(storage);
+		}
+		for (int step = STEPS.length - 1; step > 0; step--) {
+			for (int i = 0; i < 3; i++) {
+				result[step][i] -= (i == 0) ? 0 : result[step - 1][i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return long[] of nanoseconds since "start", bytes of heap used and classes loaded
+	 */
+	private static long[] measure(long start) throws InterruptedException {
+		long elapsed = System.nanoTime() - start;
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// Collect until the heap doesn't shrink anymore, so only the retained objects are counted
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(50);
+			long now = runtime.totalMemory() - runtime.freeMemory();
+			if (now >= used) {
+				break;
+			}
+			used = now;
+		}
+		return new long[] { elapsed, used, ManagementFactory.getClassLoadingMXBean().getLoadedClassCount() };
+	}
+
+	/**
+	 * Start a dependency bundle (fragments can't be started, bundles that can't be resolved are reported by
+	 * checkDependencies())
+	 */
+	private static void start(Bundle bundle) {
+		if (bundle.getHeaders().get(Constants.FRAGMENT_HOST) != null) {
+			return;
+		}
+		try {
+			bundle.start();
+		} catch (BundleException e) {
+			// Reported with the other unresolved bundles
+		}
+	}
+
+	/**
+	 * Check that all dependency bundles are resolved and all Roo services the addon references are registered,
+	 * otherwise the addon can't be activated and the results would be meaningless.
+	 *
+	 * @throws IllegalStateException listing the unresolved bundles and the missing services
+	 */
+	private static void checkDependencies(BundleContext context) {
+		List<String> unresolved = new ArrayList<String>();
+		for (Bundle bundle : context.getBundles()) {
+			if (bundle.getState() == Bundle.INSTALLED) {
+				unresolved.add(bundle.getSymbolicName());
+			}
+		}
+		List<String> missing = new ArrayList<String>();
+		for (String service : REQUIRED_SERVICES) {
+			if (context.getServiceReference(service) == null) {
+				missing.add(service);
+			}
+		}
+		if (!unresolved.isEmpty() || !missing.isEmpty()) {
+			throw new IllegalStateException("The bundle set is incomplete: unresolved bundles " + unresolved + ", missing services " + missing
+				+ ". Pass the directory 'bundle' of the Spring Roo 1.2.1 distribution, which contains all bundles of the Roo shell.");
+		}
+	}
+
+	/**
+	 * Get the service "serviceName" registered by "bundle" (SCR activates the component providing it).
+	 */
+	private static void getService(Bundle bundle, String serviceName) {
+		ServiceReference[] references = bundle.getRegisteredServices();
+		for (int i = 0; (references != null) && (i < references.length); i++) {
+			if (Arrays.asList((String[]) references[i].getProperty(Constants.OBJECTCLASS)).contains(serviceName)) {
+				if (bundle.getBundleContext().getService(references[i]) == null) {
+					throw new IllegalStateException("Service " + serviceName + " could not be activated.");
+				}
+				return;
+			}
+		}
+		throw new IllegalStateException("Service " + serviceName + " is not registered, are all dependencies of the addon in the directory?");
+	}
+
+	/**
+	 * @return List of the bundles in "directory" and Felix SCR (from the class path, if not in the directory)
+	 */
+	private static List<File> getBundles(File directory) throws IOException, URISyntaxException {
+		List<File> result = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if (files == null) {
+			throw new IllegalArgumentException("Directory '" + directory + "' not found, pass the directory 'bundle' of the Spring Roo 1.2.1 distribution.");
+		}
+		Arrays.sort(files);
+		boolean scr = false;
+		for (File file : files) {
+			if (file.getName().endsWith(".jar")) {
+				result.add(file);
+				scr |= file.getName().startsWith("org.apache.felix.scr-");
+			}
+		}
+		if (!scr) {
+			// Find the jar without loading the class, which needs the OSGi compendium classes
+			URL activator = NWCloudStartupBenchmark.class.getClassLoader().getResource(SCR_ACTIVATOR.replace('.', '/') + ".class");
+			if (activator == null) {
+				throw new IllegalStateException("Felix SCR found neither in '" + directory + "' nor on the class path.");
+			}
+			result.add(0, new File(((JarURLConnection) activator.openConnection()).getJarFileURL().toURI()));
+		}
+		return result;
+	}
+
+	private static FrameworkFactory getFrameworkFactory() {
+		Iterator<FrameworkFactory> factories = ServiceLoader.load(FrameworkFactory.class).iterator();
+		if (!factories.hasNext()) {
+			throw new IllegalStateException("No OSGi framework found on the class path.");
+		}
+		return factories.next();
+	}
+
+}